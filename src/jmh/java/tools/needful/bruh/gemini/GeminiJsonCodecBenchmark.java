@@ -0,0 +1,106 @@
+package tools.needful.bruh.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeminiJsonCodec versus the Jackson tree (readTree) parsing it replaced.
+ *
+ * Run with: mvn -P jmh test-compile exec:exec
+ * (JMH options via -Djmh.args="...", e.g. -Djmh.args="-prof gc" for allocation rates)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiJsonCodecBenchmark {
+
+    @Param({"100"})
+    private int batchSize;
+
+    @Param({"768"})
+    private int dimensions;
+
+    private final GeminiJsonCodec codec = new GeminiJsonCodec();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private byte[] batchEmbedResponse;
+    private byte[] generateContentResponse;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        StringBuilder batch = new StringBuilder("{\"embeddings\":[");
+        for (int i = 0; i < batchSize; i++) {
+            batch.append(i > 0 ? "," : "").append("{\"values\":[");
+            for (int j = 0; j < dimensions; j++) {
+                batch.append(j > 0 ? "," : "").append(random.nextFloat() * 2 - 1);
+            }
+            batch.append("]}");
+        }
+        batchEmbedResponse = batch.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+
+        String answer = "Deploys go through the release pipeline, see the runbook. ".repeat(60);
+        generateContentResponse = ("{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + answer + "\"}],"
+            + "\"role\":\"model\"},\"finishReason\":\"STOP\",\"index\":0}],"
+            + "\"usageMetadata\":{\"promptTokenCount\":1843,\"candidatesTokenCount\":712,\"totalTokenCount\":2555,"
+            + "\"promptTokensDetails\":[{\"modality\":\"TEXT\",\"tokenCount\":1843}]},"
+            + "\"modelVersion\":\"gemini-2.5-flash\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<float[]> batchEmbeddingsCodec() throws IOException {
+        return codec.readBatchEmbeddings(batchEmbedResponse, batchSize);
+    }
+
+    @Benchmark
+    public List<float[]> batchEmbeddingsTree() throws IOException {
+        JsonNode embeddings = objectMapper.readTree(batchEmbedResponse).get("embeddings");
+        List<float[]> result = new ArrayList<>(embeddings.size());
+        for (JsonNode embedding : embeddings) {
+            JsonNode values = embedding.get("values");
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) values.get(i).asDouble();
+            }
+            result.add(vector);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public GeminiJsonCodec.GeneratedContent generateContentCodec() throws IOException {
+        return codec.readGeneratedContent(generateContentResponse);
+    }
+
+    @Benchmark
+    public GeminiJsonCodec.GeneratedContent generateContentTree() throws IOException {
+        JsonNode root = objectMapper.readTree(generateContentResponse);
+        JsonNode usage = root.path("usageMetadata");
+        return new GeminiJsonCodec.GeneratedContent(
+            root.at("/candidates/0/content/parts/0/text").asText(),
+            new GeminiJsonCodec.TokenUsage(usage.path("promptTokenCount").asInt(),
+                usage.path("candidatesTokenCount").asInt(), usage.path("cachedContentTokenCount").asInt()));
+    }
+}
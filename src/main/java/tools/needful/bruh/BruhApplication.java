@@ -6,6 +6,11 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 @SpringBootApplication
 public class BruhApplication {
     public static void main(String[] args) {
+        // JVM-wide idle timeout of pooled HTTP connections (see HttpTransport); read once,
+        // when the first HttpClient is built. Override with -Djdk.httpclient.keepalive.timeout
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", "60");
+        }
         SpringApplication.run(BruhApplication.class, args);
     }
 }
@@ -1,21 +1,39 @@
 package tools.needful.bruh.agent;
 
 import tools.needful.bruh.experts.ExpertConsultationService;
-import tools.needful.bruh.experts.ExpertRouter;
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.metrics.PipelineStage;
 import tools.needful.bruh.model.AgentResponse;
+import tools.needful.bruh.model.Deadline;
+import tools.needful.bruh.skills.Skill;
 import tools.needful.bruh.skills.SkillContext;
+import tools.needful.bruh.skills.SkillExecutor;
 import tools.needful.bruh.skills.SkillRegistry;
-import tools.needful.bruh.skills.SkillRouter;
 import tools.needful.bruh.skills.SkillResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * AgentCore implements a RAG (Retrieval-Augmented Generation) pattern:
@@ -23,18 +41,33 @@ import java.util.stream.Collectors;
  * 1. RETRIEVAL: Gather context from multiple sources
  *    - Skills (e.g., query Slack for conversations)
  *    - Vector search (retrieve relevant documentation)
+ *    Every skill and the documentation search run concurrently on virtual threads,
+ *    each within its own latency budget; slow or failing branches are dropped, not awaited.
+ *
+ * Every query has a deadline (agent.deadline.total-ms) bound to the handling thread and
+ * passed down to skills and expert search. Retrieval must finish early enough to leave
+ * synthesis-reserve-ms for generation; stages with little time left do less work.
  *
  * 2. GENERATION: Synthesize one coherent answer with LLM
- *    - Combine all gathered context
+ *    - Combine all gathered context, deduped and packed into a fixed token budget
  *    - Generate answer with proper attribution
  *    - Be explicit about uncertainty
+ *
+ * Questions asked (or paraphrased) recently in the same channel are answered from
+ * AnswerCache without running either phase. The query embedding and an unfiltered
+ * vector search start before that lookup, so a miss costs no extra round trip. Identical questions arriving while one
+ * is still being answered wait for that answer (see coalesce).
  */
 @Slf4j
 @Component
 public class AgentCore {
 
+    private static final String NO_CONTEXT_ANSWER =
+        "I don't have enough information to answer that question. " +
+        "I couldn't find relevant data in Slack conversations or documentation.";
+
     @Autowired
-    private ExpertRouter expertRouter;
+    private QueryRouter queryRouter;
 
     @Autowired
     private ExpertConsultationService expertConsultationService;
@@ -43,42 +76,177 @@ public class AgentCore {
     private SkillRegistry skillRegistry;
 
     @Autowired
-    private SkillRouter skillRouter;
+    private ChatClient.Builder chatClientBuilder;
 
     @Autowired
-    private ChatClient.Builder chatClientBuilder;
+    private SkillExecutor skillExecutor;
+
+    @Autowired
+    private ContextPacker contextPacker;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private AnswerCache answerCache;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    @Qualifier("retrievalExecutor")
+    private ExecutorService retrievalExecutor;
+
+    // channel (+ thread) and normalized question -> the pipeline run answering it
+    private final Map<String, CompletableFuture<AgentResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${agent.retrieval.documentation-timeout-ms:5000}")
+    private long documentationTimeoutMs;
+
+    @Value("${agent.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${agent.retrieval.speculative-search:true}")
+    private boolean speculativeSearchEnabled;
+
+    @Value("${agent.deadline.total-ms:25000}")
+    private long totalBudgetMs;
+
+    @Value("${agent.deadline.synthesis-reserve-ms:8000}")
+    private long synthesisReserveMs;
+
+    @Value("${agent.deadline.min-retrieval-ms:1000}")
+    private long minRetrievalMs;
 
     public AgentResponse handleQuery(String query, String userId, String channelId, String messageTs, String threadTs) {
         log.info("Handling query: {}", query);
+        return runPipeline(query, userId, channelId, messageTs, threadTs, this::synthesizeAnswer);
+    }
+
+    /**
+     * Same as handleQuery, but the answer is streamed: onPartialAnswer receives the
+     * answer generated so far each time Gemini sends a new chunk.
+     */
+    public AgentResponse handleQueryStreaming(String query, String userId, String channelId, String messageTs,
+                                              String threadTs, Consumer<String> onPartialAnswer) {
+        log.info("Handling query (streaming): {}", query);
+        return runPipeline(query, userId, channelId, messageTs, threadTs,
+            (q, skillData, docs) -> streamAnswer(q, skillData, docs, onPartialAnswer));
+    }
 
-        // STEP 1: RETRIEVAL - Gather all available context
+    /**
+     * The pipeline behind both entry points; they differ only in how the answer is generated
+     */
+    private AgentResponse runPipeline(String query, String userId, String channelId, String messageTs,
+                                      String threadTs, Synthesis synthesis) {
+        Deadline deadline = Deadline.after(Duration.ofMillis(totalBudgetMs));
+
+        return coalesce(query, channelId, threadTs, () -> deadline.call(() -> {
+            // A question asked recently in this channel is answered from cache
+            AnswerCache.Lookup exact = pipelineMetrics.stage(PipelineStage.ANSWER_CACHE, "exact",
+                () -> answerCache.lookupExact(query, channelId, threadTs));
+            if (exact.isHit()) {
+                return AgentResponse.builder()
+                    .answer(exact.answer())
+                    .build();
+            }
 
-        // 1a. Determine which skills to use and execute them
-        List<String> skillData = gatherSkillData(query, userId, channelId, messageTs, threadTs);
+            // Started only after an exact miss rather than cancelled on a hit: concurrent embeds
+            // of the same text share one call. Neither the query embedding (needed by the semantic
+            // cache, routing and vector search) nor the vector search depends on anything else.
+            Future<float[]> queryEmbedding = retrievalExecutor.submit(
+                deadline.wrap(() -> embeddingModel.embed(query)));
+            Future<List<Document>> speculativeSearch = startSpeculativeSearch(query, deadline);
+
+            // ... or a paraphrase of one
+            AnswerCache.Lookup cached = pipelineMetrics.stage(PipelineStage.ANSWER_CACHE, "semantic",
+                () -> answerCache.lookupSemantic(exact, query, queryEmbedding));
+            if (cached.isHit()) {
+                cancel(speculativeSearch);
+                return AgentResponse.builder()
+                    .answer(cached.answer())
+                    .build();
+            }
 
-        // 1b. Search vector store for relevant documentation
-        List<Document> relevantDocs = gatherDocumentation(query);
+            // STEP 0: ROUTING - Local match on the query embedding, else one LLM call
+            QueryRouter.RoutingPlan plan = pipelineMetrics.stage(PipelineStage.ROUTING, null,
+                () -> queryRouter.route(query, embeddingOf(queryEmbedding)));
 
-        // STEP 2: GENERATION - Synthesize final answer
-        String synthesizedAnswer = synthesizeAnswer(query, skillData, relevantDocs);
+            // STEP 1: RETRIEVAL - Gather all available context (skills + documentation, concurrently)
+            Retrieval retrieval = pipelineMetrics.stage(PipelineStage.RETRIEVAL, null,
+                () -> retrieve(plan, query, userId, channelId, messageTs, threadTs, deadline, speculativeSearch));
 
-        return AgentResponse.builder()
-            .answer(synthesizedAnswer)
-            .build();
+            // STEP 2: GENERATION - Synthesize (or stream) the final answer
+            String synthesizedAnswer = pipelineMetrics.stage(PipelineStage.SYNTHESIS, null,
+                () -> synthesis.synthesize(query, retrieval.skillData(), retrieval.docs()));
+            cacheAnswer(cached, query, plan, retrieval, synthesizedAnswer);
+
+            return AgentResponse.builder()
+                .answer(synthesizedAnswer)
+                .build();
+        }));
     }
 
     /**
-     * RETRIEVAL: Execute skills to gather data (e.g., Slack messages, external APIs)
+     * Single flight: while a question is being answered, the same question asked in the
+     * same channel (and thread) waits for that answer instead of running the pipeline
+     * again. Each caller still posts the answer in its own thread; a failure is shared too.
      */
-    private List<String> gatherSkillData(String query, String userId, String channelId, String messageTs, String threadTs) {
-        List<String> skillData = new ArrayList<>();
+    private AgentResponse coalesce(String query, String channelId, String threadTs,
+                                   Supplier<AgentResponse> pipeline) {
+        if (!coalescingEnabled) {
+            return pipeline.get();
+        }
 
-        // Use LLM to determine which skill(s) are needed
-        List<String> skillNames = skillRouter.routeToSkills(query);
+        String key = AnswerCache.keyOf(query, channelId) + (threadTs != null ? '\u0000' + threadTs : "");
+        CompletableFuture<AgentResponse> own = new CompletableFuture<>();
+        CompletableFuture<AgentResponse> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            log.info("Same question is already being answered in this channel, waiting for it: {}", query);
+            pipelineMetrics.recordCoalesced();
+            try {
+                return running.get(totalBudgetMs, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new RuntimeException("Timed out waiting for the identical question in flight", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for the identical question in flight", e);
+            }
+        }
 
-        if (skillNames.isEmpty()) {
-            log.info("No skills needed for this query");
-            return skillData;
+        try {
+            AgentResponse response = pipeline.get();
+            own.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * RETRIEVAL: Fan out to every selected skill and the documentation search at once.
+     *
+     * All branches start together. Skills run within their declared latency budget
+     * (SkillExecutor cancels them when it runs out); the documentation search is awaited
+     * until documentation-timeout-ms. Whatever finished in time is used, so retrieval
+     * takes as long as the slowest branch that made its deadline rather than the sum.
+     * No branch may run into the time reserved for synthesis.
+     */
+    private Retrieval retrieve(QueryRouter.RoutingPlan plan, String query, String userId, String channelId,
+                               String messageTs, String threadTs, Deadline deadline,
+                               Future<List<Document>> speculativeSearch) {
+        long start = System.nanoTime();
+        Deadline retrievalDeadline = deadline.minus(Duration.ofMillis(synthesisReserveMs));
+
+        if (!retrievalDeadline.allows(Duration.ofMillis(minRetrievalMs))) {
+            log.warn("Only {} left after routing, skipping retrieval", deadline);
+            cancel(speculativeSearch);
+            return new Retrieval(List.of(), List.of(), false);
         }
 
         SkillContext context = SkillContext.builder()
@@ -87,46 +255,145 @@ public class AgentCore {
             .channelId(channelId)
             .messageTs(messageTs)
             .threadTs(threadTs)
+            .deadline(retrievalDeadline)
             .build();
 
-        // Execute all selected skills
-        for (String skillName : skillNames) {
-            var skill = skillRegistry.getSkill(skillName);
+        if (plan.skills().isEmpty()) {
+            log.info("No skills needed for this query");
+        }
+
+        List<SkillExecutor.SkillExecution> skillBranches = new ArrayList<>();
+        for (String skillName : plan.skills()) {
+            Skill skill = skillRegistry.getSkill(skillName);
             if (skill == null) {
                 log.warn("Skill not found: {}", skillName);
                 continue;
             }
+            skillBranches.add(skillExecutor.start(skill, context));
+        }
+        Future<List<Document>> documentationBranch = retrievalExecutor.submit(
+            retrievalDeadline.wrap(() -> gatherDocumentation(plan.experts(), query, retrievalDeadline,
+                speculativeSearch)));
+        long documentationWaitMs = retrievalDeadline.cap(Duration.ofMillis(documentationTimeoutMs)).toMillis();
+
+        try {
+            List<String> skillData = new ArrayList<>();
+            for (SkillExecutor.SkillExecution branch : skillBranches) {
+                String data = awaitSkill(branch);
+                if (data != null) {
+                    skillData.add(data);
+                }
+            }
+
+            List<Document> docs = await(documentationBranch, start, documentationWaitMs, "documentation");
+
+            log.info("Retrieval finished in {} ms ({} skill results, {} documents)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                skillData.size(), docs != null ? docs.size() : 0);
+            boolean complete = skillData.size() == skillBranches.size() && docs != null;
+            return new Retrieval(skillData, docs != null ? docs : List.of(), complete);
+        } finally {
+            // Nothing outlives the retrieval phase
+            skillBranches.forEach(SkillExecutor.SkillExecution::cancel);
+            documentationBranch.cancel(true);
+            cancel(speculativeSearch);
+        }
+    }
+
+    /**
+     * Starts the unfiltered vector search before routing, so the query embedding and the
+     * Chroma round trip overlap with the routing LLM call. Null when disabled.
+     */
+    private Future<List<Document>> startSpeculativeSearch(String query, Deadline deadline) {
+        if (!speculativeSearchEnabled) {
+            return null;
+        }
+        Deadline retrievalDeadline = deadline.minus(Duration.ofMillis(synthesisReserveMs));
+        return retrievalExecutor.submit(
+            retrievalDeadline.wrap(() -> expertConsultationService.searchAllExperts(query)));
+    }
 
-            log.info("Executing skill: {}", skillName);
-            SkillResult result = skill.execute(context);
+    /**
+     * The query embedding, or null if it failed (routing then embeds on its own)
+     */
+    private static float[] embeddingOf(Future<float[]> queryEmbedding) {
+        try {
+            return queryEmbedding.get();
+        } catch (ExecutionException e) {
+            log.warn("Could not embed query: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
 
-            if (result.isSuccess()) {
-                skillData.add(String.format("[Data from %s skill]\n%s", skillName, result.getResult()));
+    private static void cancel(Future<?> branch) {
+        if (branch != null) {
+            branch.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for a skill; its future completes by the end of the skill's budget at the latest.
+     * Returns the formatted skill data, or null if the skill failed or ran out of time.
+     */
+    private String awaitSkill(SkillExecutor.SkillExecution branch) {
+        try {
+            SkillResult result = branch.future().get();
+            if (!result.isSuccess()) {
+                log.warn("Skill {} failed: {}", branch.skillName(), result.getError());
+                return null;
+            }
+            return String.format("[Data from %s skill]\n%s", branch.skillName(), result.getResult());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                log.warn("Skill {} exceeded its {} ms budget, continuing without it",
+                    branch.skillName(), branch.budget().toMillis());
             } else {
-                log.warn("Skill {} failed: {}", skillName, result.getError());
+                log.warn("Skill {} failed, continuing without it", branch.skillName(), e.getCause());
             }
+        } catch (CancellationException e) {
+            log.warn("Skill {} was cancelled", branch.skillName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return null;
+    }
 
-        return skillData;
+    /**
+     * Waits for a branch until startNanos + timeoutMs; null if it failed or ran out of time
+     */
+    private <T> T await(Future<T> branch, long startNanos, long timeoutMs, String name) {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - startNanos);
+        try {
+            return branch.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            branch.cancel(true);
+            log.warn("Retrieval branch timed out after {} ms, continuing without it: {}", timeoutMs, name);
+        } catch (ExecutionException e) {
+            log.warn("Retrieval branch failed, continuing without it: {}", name, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            branch.cancel(true);
+        }
+        return null;
     }
 
     /**
      * RETRIEVAL: Search vector store for relevant documentation
      */
-    private List<Document> gatherDocumentation(String query) {
-        // Use LLM to determine which expert(s) might have relevant docs
-        List<String> expertNames = expertRouter.routeToExperts(query);
-
+    private List<Document> gatherDocumentation(List<String> expertNames, String query, Deadline deadline,
+                                               Future<List<Document>> speculativeSearch) {
         if (expertNames.isEmpty()) {
             log.info("No expert documentation needed");
             return List.of();
         }
 
-        // For now, query first expert (could be enhanced to query all)
-        String expertName = expertNames.get(0);
-        List<Document> docs = expertConsultationService.retrieveRelevantDocuments(expertName, query);
+        // All routed experts are searched in parallel and merged into one ranked list
+        List<Document> docs = expertConsultationService.retrieveFromExperts(expertNames, query, deadline,
+            speculativeSearch);
 
-        log.info("Retrieved {} documents from expert: {}", docs.size(), expertName);
+        log.info("Retrieved {} documents from experts: {}", docs.size(), expertNames);
         return docs;
     }
 
@@ -134,33 +401,11 @@ public class AgentCore {
      * GENERATION: Synthesize final answer using LLM with all gathered context
      */
     private String synthesizeAnswer(String query, List<String> skillData, List<Document> docs) {
-        StringBuilder contextBuilder = new StringBuilder();
-
-        // Add skill data to context
-        if (!skillData.isEmpty()) {
-            contextBuilder.append("=== DATA FROM SKILLS ===\n\n");
-            for (String data : skillData) {
-                contextBuilder.append(data).append("\n\n");
-            }
-        }
-
-        // Add documentation to context
-        if (!docs.isEmpty()) {
-            contextBuilder.append("=== DOCUMENTATION ===\n\n");
-            for (int i = 0; i < docs.size(); i++) {
-                Document doc = docs.get(i);
-                String source = (String) doc.getMetadata().getOrDefault("source", "Unknown");
-                contextBuilder.append(String.format("[Document %d - Source: %s]\n%s\n\n",
-                    i + 1, source, doc.getText()));
-            }
-        }
-
-        String context = contextBuilder.toString();
+        String context = contextPacker.pack(skillData, docs);
 
         // If no context was gathered, say so
         if (context.trim().isEmpty()) {
-            return "I don't have enough information to answer that question. " +
-                   "I couldn't find relevant data in Slack conversations or documentation.";
+            return NO_CONTEXT_ANSWER;
         }
 
         // Build synthesis prompt
@@ -168,14 +413,60 @@ public class AgentCore {
 
         // Call LLM to generate final answer
         ChatClient chatClient = chatClientBuilder.build();
-        String answer = chatClient.prompt()
+        String answer = pipelineMetrics.llmCall(LlmCallSite.SYNTHESIS, () -> chatClient.prompt()
             .user(prompt)
             .call()
-            .content();
+            .content());
 
         return answer;
     }
 
+    /**
+     * GENERATION: Same prompt as synthesizeAnswer, consumed as a token stream
+     */
+    private String streamAnswer(String query, List<String> skillData, List<Document> docs,
+                                Consumer<String> onPartialAnswer) {
+        String context = contextPacker.pack(skillData, docs);
+
+        if (context.trim().isEmpty()) {
+            return NO_CONTEXT_ANSWER;
+        }
+
+        String prompt = buildSynthesisPrompt(query, context);
+
+        StringBuilder answer = new StringBuilder();
+        ChatClient chatClient = chatClientBuilder.build();
+        pipelineMetrics.llmCall(LlmCallSite.SYNTHESIS, () -> chatClient.prompt()
+            .user(prompt)
+            .stream()
+            .content()
+            .doOnNext(chunk -> {
+                answer.append(chunk);
+                onPartialAnswer.accept(answer.toString());
+            })
+            .blockLast());
+
+        return answer.toString();
+    }
+
+    /**
+     * Caches the answer unless it was built from partial context, found nothing, or used
+     * a skill whose output goes stale immediately
+     */
+    private void cacheAnswer(AnswerCache.Lookup lookup, String query, QueryRouter.RoutingPlan plan,
+                             Retrieval retrieval, String answer) {
+        if (!retrieval.complete() || NO_CONTEXT_ANSWER.equals(answer)) {
+            return;
+        }
+        for (String skillName : plan.skills()) {
+            Skill skill = skillRegistry.getSkill(skillName);
+            if (skill != null && !skill.isCacheable()) {
+                return;
+            }
+        }
+        answerCache.store(lookup, query, answer);
+    }
+
     /**
      * Builds the final synthesis prompt with attribution guidelines
      */
@@ -205,4 +496,19 @@ public class AgentCore {
             query
         );
     }
+
+    /**
+     * Context gathered for synthesis; complete is false if any branch failed, timed out
+     * or was skipped, in which case the answer is not worth caching
+     */
+    private record Retrieval(List<String> skillData, List<Document> docs, boolean complete) {
+    }
+
+    /**
+     * GENERATION step of the pipeline: synthesizeAnswer or streamAnswer
+     */
+    @FunctionalInterface
+    private interface Synthesis {
+        String synthesize(String query, List<String> skillData, List<Document> docs);
+    }
 }
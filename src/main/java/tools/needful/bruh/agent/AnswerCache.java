@@ -0,0 +1,238 @@
+package tools.needful.bruh.agent;
+
+import tools.needful.bruh.experts.ExpertRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Answers to recent questions, so a repeated question skips the whole pipeline.
+ *
+ * Two tiers, both scoped (see scopeOf):
+ *   exact     normalized query text (lowercase, punctuation and extra spaces dropped)
+ *   semantic  cosine similarity of the query embedding to a cached question's,
+ *             at or above similarity-threshold
+ *
+ * The semantic tier needs the query embedding, which the caller computes anyway for
+ * routing and vector search; the caller only starts it once the exact tier missed.
+ *
+ * Entries remember the index version (ExpertRegistry) they were answered against and
+ * are dropped once any expert's docs change, or after ttl-minutes, since answers built
+ * from Slack go stale on their own. At most max-entries are kept, least recently used
+ * evicted first.
+ */
+@Slf4j
+@Component
+public class AnswerCache {
+
+    @Autowired
+    private ExpertRegistry expertRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${agent.answer-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.answer-cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${agent.answer-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Value("${agent.answer-cache.similarity-threshold:0.93}")
+    private double similarityThreshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // scope + normalized query -> entry, in access order for LRU eviction
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Looks the query up in the exact tier; a miss goes on to lookupSemantic. Thread
+     * replies are never served from or stored in the cache: their answer depends on
+     * the thread.
+     */
+    public Lookup lookupExact(String query, String channelId, String threadTs) {
+        if (!enabled || threadTs != null) {
+            return Lookup.BYPASS;
+        }
+
+        String scope = scopeOf(channelId);
+        String key = keyOf(query, channelId);
+        long indexVersion = expertRegistry.getIndexVersion();
+
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && isLive(entry, indexVersion)) {
+                return hit("exact", query, new Lookup(scope, key, entry.vector(), indexVersion, entry.answer()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new Lookup(scope, key, null, indexVersion, null);
+    }
+
+    /**
+     * Looks a query the exact tier missed up in the semantic tier; queryEmbedding is
+     * the pending embedding of the query. Hits and bypasses are returned as they are.
+     */
+    public Lookup lookupSemantic(Lookup exact, String query, Future<float[]> queryEmbedding) {
+        if (exact.key() == null || exact.isHit()) {
+            return exact;
+        }
+
+        String scope = exact.scope();
+        String key = exact.key();
+        long indexVersion = exact.indexVersion();
+        float[] vector = unitVector(queryEmbedding);
+        if (vector != null) {
+            lock.lock();
+            try {
+                Entry best = null;
+                double bestSimilarity = similarityThreshold;
+                for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                    Entry entry = it.next();
+                    if (!isLive(entry, indexVersion)) {
+                        it.remove();
+                        continue;
+                    }
+                    if (!entry.scope().equals(scope) || entry.vector() == null) {
+                        continue;
+                    }
+                    double similarity = dot(vector, entry.vector());
+                    if (similarity >= bestSimilarity) {
+                        best = entry;
+                        bestSimilarity = similarity;
+                    }
+                }
+                if (best != null) {
+                    entries.get(best.key()); // touch for LRU
+                    log.info("Semantic cache match ({}) with: {}", String.format("%.3f", bestSimilarity), best.query());
+                    return hit("semantic", query, new Lookup(scope, key, vector, indexVersion, best.answer()));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        meterRegistry.counter("bruh.answer.cache", "result", "miss").increment();
+        return new Lookup(scope, key, vector, indexVersion, null);
+    }
+
+    /**
+     * Caches the answer under the looked-up query, unless the index changed meanwhile
+     */
+    public void store(Lookup lookup, String query, String answer) {
+        if (lookup.key() == null || answer == null || answer.isBlank()
+                || lookup.indexVersion() != expertRegistry.getIndexVersion()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            entries.put(lookup.key(), new Entry(lookup.scope(), lookup.key(), query, lookup.vector(), answer,
+                lookup.indexVersion(), System.nanoTime()));
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries) {
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Who may see an answer given in a channel. Answers can quote the channel's own
+     * history, so each channel is its own scope; DMs and private channels included.
+     */
+    private static String scopeOf(String channelId) {
+        return channelId != null ? channelId : "";
+    }
+
+    /**
+     * The question as asked in a channel: scope plus normalized text
+     */
+    static String keyOf(String query, String channelId) {
+        return scopeOf(channelId) + '\u0000' + normalize(query);
+    }
+
+    private static String normalize(String query) {
+        return query.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private Lookup hit(String tier, String query, Lookup lookup) {
+        log.info("Answer cache hit ({}) for query: {}", tier, query);
+        meterRegistry.counter("bruh.answer.cache", "result", tier).increment();
+        return lookup;
+    }
+
+    private boolean isLive(Entry entry, long indexVersion) {
+        return entry.indexVersion() == indexVersion
+            && System.nanoTime() - entry.storedAtNanos() < TimeUnit.MINUTES.toNanos(ttlMinutes);
+    }
+
+    /**
+     * Unit-length query embedding, or null if it cannot be computed (exact tier only then)
+     */
+    private float[] unitVector(Future<float[]> queryEmbedding) {
+        try {
+            float[] vector = queryEmbedding.get();
+            double norm = Math.sqrt(dot(vector, vector));
+            if (norm == 0) {
+                return null;
+            }
+            float[] unit = new float[vector.length];
+            for (int i = 0; i < vector.length; i++) {
+                unit[i] = (float) (vector[i] / norm);
+            }
+            return unit;
+        } catch (ExecutionException e) {
+            log.warn("Could not embed query for the semantic answer cache: {}", e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Result of a lookup; answer is null on a miss. Passed back to store() with the
+     * freshly generated answer.
+     */
+    public record Lookup(String scope, String key, float[] vector, long indexVersion, String answer) {
+
+        static final Lookup BYPASS = new Lookup(null, null, null, 0, null);
+
+        public boolean isHit() {
+            return answer != null;
+        }
+    }
+
+    private record Entry(String scope, String key, String query, float[] vector, String answer,
+                         long indexVersion, long storedAtNanos) {
+    }
+}
@@ -0,0 +1,270 @@
+package tools.needful.bruh.agent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the synthesis context within a fixed token budget.
+ *
+ * 1. Dedupe: documents whose word-trigram shingles overlap an earlier document by
+ *    dedupe-threshold (Jaccard) or more are dropped; the same applies line by line to
+ *    skill output, so a Slack message returned by several searches appears once.
+ * 2. Allocate: max-tokens is split across the remaining sources in proportion to
+ *    their relevance (document score, skills count as fully relevant). Sources that
+ *    need less than their share hand the rest to the next most relevant ones; sources
+ *    left with too small a share are dropped and the budget split again.
+ * 3. Trim: each source is cut to its allocation at a line or sentence boundary.
+ *
+ * Tokens are estimated locally as characters / chars-per-token, which is close
+ * enough for Gemini on English text and costs no API call.
+ */
+@Slf4j
+@Component
+public class ContextPacker {
+
+    private static final double SKILL_RELEVANCE = 1.0;
+    private static final int MIN_DEDUPE_SHINGLES = 6;     // lines of about eight words or more
+    private static final int MAX_SPEAKER_PREFIX = 60;
+    private static final int MIN_USEFUL_TOKENS = 50;
+    private static final String TRUNCATED = " …[truncated]";
+
+    @Value("${agent.context.max-tokens:6000}")
+    private int maxTokens;
+
+    @Value("${agent.context.chars-per-token:4}")
+    private int charsPerToken;
+
+    @Value("${agent.context.dedupe-threshold:0.85}")
+    private double dedupeThreshold;
+
+    /**
+     * Packs skill output and documents into the "=== DATA FROM SKILLS ===" /
+     * "=== DOCUMENTATION ===" context used by the synthesis prompt
+     */
+    public String pack(List<String> skillData, List<Document> docs) {
+        List<Source> sources = new ArrayList<>();
+        List<Set<Integer>> seenLines = new ArrayList<>();
+        for (String data : skillData) {
+            String deduped = dedupeLines(data, seenLines);
+            if (!deduped.isBlank()) {
+                sources.add(new Source(true, "", deduped, SKILL_RELEVANCE));
+            }
+        }
+
+        List<Set<Integer>> seenDocs = new ArrayList<>();
+        int droppedDocs = 0;
+        for (int rank = 0; rank < docs.size(); rank++) {
+            Document doc = docs.get(rank);
+            String text = doc.getText() != null ? doc.getText() : "";
+            Set<Integer> shingles = shingles(text);
+            if (isDuplicate(shingles, seenDocs)) {
+                droppedDocs++;
+                continue;
+            }
+            seenDocs.add(shingles);
+            String source = (String) doc.getMetadata().getOrDefault("source", "Unknown");
+            // Fused lists are ranked; fall back to rank when a store reports no score
+            double relevance = doc.getScore() != null ? doc.getScore() : 1.0 / (rank + 1);
+            sources.add(new Source(false, source, text, relevance));
+        }
+
+        allocate(sources);
+
+        StringBuilder context = new StringBuilder();
+        int usedTokens = 0;
+        boolean skillsHeader = false;
+        boolean docsHeader = false;
+        int docNumber = 0;
+        for (Source source : sources) {
+            if (source.allocation <= 0) {
+                continue;
+            }
+            String text = trim(source.text, source.allocation);
+            usedTokens += estimateTokens(text);
+            if (source.skill) {
+                if (!skillsHeader) {
+                    context.append("=== DATA FROM SKILLS ===\n\n");
+                    skillsHeader = true;
+                }
+                context.append(text).append("\n\n");
+            } else {
+                if (!docsHeader) {
+                    context.append("=== DOCUMENTATION ===\n\n");
+                    docsHeader = true;
+                }
+                context.append(String.format("[Document %d - Source: %s]\n%s\n\n",
+                    ++docNumber, source.label, text));
+            }
+        }
+
+        log.info("Packed context: ~{} tokens (budget {}), {} sources, {} duplicate documents dropped",
+            usedTokens, maxTokens, sources.stream().filter(s -> s.allocation > 0).count(), droppedDocs);
+        return context.toString();
+    }
+
+    public int estimateTokens(String text) {
+        return (text.length() + charsPerToken - 1) / charsPerToken;
+    }
+
+    /**
+     * Proportional shares by relevance; what a source does not need is handed to the
+     * next most relevant sources that still want more. A source whose share is too
+     * small to carry anything useful is dropped, least relevant first, and the budget
+     * is split again among the rest so its tokens are not lost.
+     */
+    private void allocate(List<Source> sources) {
+        List<Source> included = new ArrayList<>(sources);
+        while (!included.isEmpty()) {
+            distribute(included);
+            Source undersized = included.stream()
+                .filter(s -> s.allocation < Math.min(s.tokens, MIN_USEFUL_TOKENS))
+                .min(Comparator.comparingDouble((Source s) -> s.relevance))
+                .orElse(null);
+            if (undersized == null) {
+                return;
+            }
+            undersized.allocation = 0;
+            included.remove(undersized);
+        }
+    }
+
+    private void distribute(List<Source> sources) {
+        double totalRelevance = sources.stream().mapToDouble(s -> s.relevance).sum();
+        if (totalRelevance <= 0) {
+            sources.forEach(s -> s.allocation = 0);
+            return;
+        }
+
+        int spare = maxTokens;
+        for (Source source : sources) {
+            int share = (int) (maxTokens * source.relevance / totalRelevance);
+            source.allocation = Math.min(source.tokens, share);
+            spare -= source.allocation;
+        }
+
+        List<Source> byRelevance = sources.stream()
+            .sorted(Comparator.comparingDouble((Source s) -> s.relevance).reversed())
+            .toList();
+        for (Source source : byRelevance) {
+            int extra = Math.min(spare, source.tokens - source.allocation);
+            source.allocation += extra;
+            spare -= extra;
+        }
+    }
+
+    private String trim(String text, int tokens) {
+        int maxChars = tokens * charsPerToken;
+        if (text.length() <= maxChars) {
+            return text;
+        }
+
+        int limit = Math.max(0, maxChars - TRUNCATED.length());
+        // Prefer ending on a line, then a sentence, within the last fifth of the allowance
+        int floor = limit * 4 / 5;
+        int cut = text.lastIndexOf('\n', limit);
+        if (cut < floor) {
+            cut = text.lastIndexOf(". ", limit) + 1;
+        }
+        if (cut < floor) {
+            cut = limit;
+        }
+        return text.substring(0, cut).stripTrailing() + TRUNCATED;
+    }
+
+    /**
+     * Drops lines that repeat (or nearly repeat) a line seen in earlier skill output.
+     * Slack lines are compared without their "• [#channel] user:" prefix, so a message
+     * quoted or reposted by someone else is still a duplicate. Short lines (headers,
+     * separators) are always kept.
+     */
+    private String dedupeLines(String text, List<Set<Integer>> seen) {
+        StringBuilder kept = new StringBuilder(text.length());
+        for (String line : text.split("\n", -1)) {
+            Set<Integer> shingles = shingles(messageBody(line));
+            if (shingles.size() >= MIN_DEDUPE_SHINGLES) {
+                if (isDuplicate(shingles, seen)) {
+                    continue;
+                }
+                seen.add(shingles);
+            }
+            if (!kept.isEmpty()) {
+                kept.append('\n');
+            }
+            kept.append(line);
+        }
+        return kept.toString();
+    }
+
+    private static String messageBody(String line) {
+        int speaker = line.indexOf(": ");
+        return speaker > 0 && speaker <= MAX_SPEAKER_PREFIX ? line.substring(speaker + 2) : line;
+    }
+
+    private boolean isDuplicate(Set<Integer> shingles, List<Set<Integer>> seen) {
+        if (shingles.isEmpty()) {
+            return false;
+        }
+        for (Set<Integer> other : seen) {
+            if (jaccard(shingles, other) >= dedupeThreshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double jaccard(Set<Integer> a, Set<Integer> b) {
+        Set<Integer> smaller = a.size() <= b.size() ? a : b;
+        Set<Integer> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (Integer shingle : smaller) {
+            if (larger.contains(shingle)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+
+    /**
+     * Hashes of the lowercase word trigrams of the text
+     */
+    private static Set<Integer> shingles(String text) {
+        String[] words = text.toLowerCase().split("[^\\p{L}\\p{N}]+");
+        List<String> tokens = new ArrayList<>(words.length);
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                tokens.add(word);
+            }
+        }
+
+        Set<Integer> shingles = new HashSet<>();
+        for (int i = 0; i + 2 < tokens.size(); i++) {
+            shingles.add((tokens.get(i) + ' ' + tokens.get(i + 1) + ' ' + tokens.get(i + 2)).hashCode());
+        }
+        return shingles;
+    }
+
+    private class Source {
+        final boolean skill;
+        final String label;
+        final String text;
+        final double relevance;
+        final int tokens;
+        int allocation;
+
+        Source(boolean skill, String label, String text, double relevance) {
+            this.skill = skill;
+            this.label = label;
+            this.text = text;
+            this.relevance = relevance;
+            this.tokens = estimateTokens(text);
+        }
+    }
+}
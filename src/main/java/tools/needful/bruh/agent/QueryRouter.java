@@ -1,53 +1,301 @@
 package tools.needful.bruh.agent;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import tools.needful.bruh.experts.Expert;
+import tools.needful.bruh.experts.ExpertRegistry;
+import tools.needful.bruh.experts.ExpertRouter;
+import tools.needful.bruh.gemini.GeminiApiClient;
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.skills.Skill;
+import tools.needful.bruh.skills.SkillRegistry;
+import tools.needful.bruh.skills.SkillRouter;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Decides skills, experts and route type for a query in a single Gemini call.
+ *
+ * The model answers with JSON constrained by a responseSchema whose enums are the
+ * registered skill names and the ready expert names, so the result is parsed
+ * instead of substring-matched. If the structured call fails, routing falls back
+ * to SkillRouter + ExpertRouter.
+ *
+ * Experts are first matched locally against their embedding centroids
+ * (ExpertRouter.routeLocally); when that is confident the call only decides skills.
+ * Skills named by a trigger phrase (SkillRegistry.matchTriggers) are always kept; a
+ * query made of trigger phrases only skips routing entirely, and one whose experts
+ * are also matched locally skips the call.
+ */
 @Slf4j
 @Component
 public class QueryRouter {
 
     @Autowired
-    private ChatClient.Builder chatClientBuilder;
+    private GeminiApiClient geminiApiClient;
 
-    public RouteDecision route(String query) {
-        String prompt = String.format("""
-            Analyze this query and decide how to handle it:
+    @Autowired
+    private SkillRegistry skillRegistry;
 
-            Query: "%s"
+    @Autowired
+    private ExpertRegistry expertRegistry;
 
-            Should this be handled by:
-            1. A skill (general capability like time, data access to Slack conversations/history, search)
-            2. An expert (domain-specific knowledge from documentation)
-            3. Both
+    @Autowired
+    private SkillRouter skillRouter;
 
-            Respond with: SKILL, EXPERT, or BOTH
-            """,
-            query
-        );
+    @Autowired
+    private ExpertRouter expertRouter;
 
-        ChatClient chatClient = chatClientBuilder.build();
-        String response = chatClient.prompt()
-            .user(prompt)
-            .call()
-            .content()
-            .toUpperCase()
-            .trim();
+    @Autowired
+    private ObjectMapper objectMapper;
 
-        RouteDecision decision = RouteDecision.EXPERT; // default
-        if (response.contains("SKILL")) {
-            decision = RouteDecision.SKILL;
-        } else if (response.contains("BOTH")) {
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    /**
+     * queryVector is the query embedding if the caller already has it (any scale), else null
+     */
+    public RoutingPlan route(String query, float[] queryVector) {
+        List<String> triggered = skillRegistry.matchTriggers(query);
+        if (!triggered.isEmpty() && skillRegistry.isTriggerOnly(query)) {
+            // Nothing but trigger phrases: the triggered skills answer it, no routing call at all
+            log.info("Query routed to: {} by trigger phrase (skills: {})", RouteDecision.SKILL, triggered);
+            return new RoutingPlan(RouteDecision.SKILL, triggered, List.of());
+        }
+
+        List<String> skillNames = skillRegistry.getAllSkills().stream()
+            .map(Skill::getName)
+            .sorted()
+            .collect(Collectors.toList());
+        List<Expert> experts = expertRegistry.getReadyExperts();
+        float[] vector = queryVector != null ? queryVector : expertRouter.embedQuery(query);
+        List<String> localExperts = expertRouter.routeLocally(vector).orElse(null);
+
+        if (!triggered.isEmpty() && localExperts != null) {
+            // Skills known from the trigger phrase, experts from their centroids
+            log.info("Query routed to: {} by trigger phrase and centroids (skills: {}, experts: {})",
+                RouteDecision.BOTH, triggered, localExperts);
+            return new RoutingPlan(RouteDecision.BOTH, triggered, localExperts);
+        }
+
+        RoutingPlan plan;
+        try {
+            if (localExperts != null) {
+                String response = pipelineMetrics.llmCall(LlmCallSite.SKILL_ROUTING,
+                    () -> geminiApiClient.generateStructuredContent(buildSkillsPrompt(query), buildSkillsSchema(skillNames)));
+                plan = parseSkillsPlan(response, localExperts);
+            } else {
+                String response = pipelineMetrics.llmCall(LlmCallSite.ROUTING,
+                    () -> geminiApiClient.generateStructuredContent(
+                        buildRoutingPrompt(query, experts), buildResponseSchema(skillNames, experts)));
+                plan = parsePlan(response);
+            }
+        } catch (Exception e) {
+            log.warn("Structured routing failed, falling back to separate skill/expert routing: {}", e.getMessage());
+            plan = fallbackRoute(query);
+        }
+        plan = withSkills(plan, triggered);
+
+        log.info("Query routed to: {} (skills: {}, experts: {})", plan.decision(), plan.skills(), plan.experts());
+        return plan;
+    }
+
+    /**
+     * Adds triggered skills the routing call may have left out
+     */
+    private RoutingPlan withSkills(RoutingPlan plan, List<String> triggered) {
+        if (triggered.isEmpty() || plan.skills().containsAll(triggered)) {
+            return plan;
+        }
+        List<String> skills = new ArrayList<>(triggered);
+        plan.skills().stream().filter(skill -> !skills.contains(skill)).forEach(skills::add);
+        RouteDecision decision = plan.experts().isEmpty() ? RouteDecision.SKILL : RouteDecision.BOTH;
+        return new RoutingPlan(decision, skills, plan.experts());
+    }
+
+    private RoutingPlan parsePlan(String response) throws Exception {
+        JsonNode root = objectMapper.readTree(response);
+
+        RouteDecision decision = RouteDecision.valueOf(root.path("route").asText("EXPERT").toUpperCase());
+
+        // Keep only names that still exist; the schema enums make this a formality
+        List<String> skills = decision.usesSkills() ? parseSkills(root.path("skills")) : new ArrayList<>();
+
+        List<String> experts = new ArrayList<>();
+        if (decision.usesExperts()) {
+            for (JsonNode expert : root.path("experts")) {
+                String name = expert.asText().trim();
+                if (isReady(name) && !experts.contains(name)) {
+                    experts.add(name);
+                }
+            }
+            if (experts.isEmpty() && isReady("bot")) {
+                // Default to bot expert if nothing matches
+                experts.add("bot");
+            }
+        }
+
+        return new RoutingPlan(decision, skills, experts);
+    }
+
+    /**
+     * Experts already decided locally; the model only picked skills
+     */
+    private RoutingPlan parseSkillsPlan(String response, List<String> experts) throws Exception {
+        List<String> skills = parseSkills(objectMapper.readTree(response).path("skills"));
+        return new RoutingPlan(skills.isEmpty() ? RouteDecision.EXPERT : RouteDecision.BOTH, skills, experts);
+    }
+
+    private List<String> parseSkills(JsonNode names) {
+        List<String> skills = new ArrayList<>();
+        for (JsonNode skill : names) {
+            String name = skill.asText().trim().toLowerCase();
+            if (skillRegistry.getSkill(name) != null && !skills.contains(name)) {
+                skills.add(name);
+            }
+        }
+        return skills;
+    }
+
+    private RoutingPlan fallbackRoute(String query) {
+        List<String> skills = skillRouter.routeToSkills(query);
+        List<String> experts = expertRouter.routeToExperts(query);
+
+        RouteDecision decision;
+        if (!skills.isEmpty() && !experts.isEmpty()) {
             decision = RouteDecision.BOTH;
+        } else if (!skills.isEmpty()) {
+            decision = RouteDecision.SKILL;
+        } else if (!experts.isEmpty()) {
+            decision = RouteDecision.EXPERT;
+        } else {
+            decision = RouteDecision.NONE;
         }
+        return new RoutingPlan(decision, skills, experts);
+    }
+
+    private boolean isReady(String name) {
+        Expert expert = expertRegistry.getExpert(name);
+        return expert != null && expert.isReady();
+    }
+
+    /**
+     * Gemini Schema (OpenAPI subset) for {"route": ..., "skills": [...], "experts": [...]}
+     */
+    private String buildResponseSchema(List<String> skillNames, List<Expert> experts) {
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "OBJECT");
+
+        ObjectNode properties = schema.putObject("properties");
+        ObjectNode route = properties.putObject("route");
+        route.put("type", "STRING");
+        ArrayNode routes = route.putArray("enum");
+        for (RouteDecision decision : RouteDecision.values()) {
+            routes.add(decision.name());
+        }
+
+        properties.set("skills", stringArray(skillNames));
+        properties.set("experts", stringArray(experts.stream().map(Expert::getName).collect(Collectors.toList())));
+
+        ArrayNode required = schema.putArray("required");
+        required.add("route").add("skills").add("experts");
+        ArrayNode ordering = schema.putArray("propertyOrdering");
+        ordering.add("route").add("skills").add("experts");
 
-        log.info("Query routed to: {}", decision);
-        return decision;
+        return schema.toString();
+    }
+
+    /**
+     * {"skills": [...]} only
+     */
+    private String buildSkillsSchema(List<String> skillNames) {
+        ObjectNode schema = objectMapper.createObjectNode();
+        schema.put("type", "OBJECT");
+        schema.putObject("properties").set("skills", stringArray(skillNames));
+        schema.putArray("required").add("skills");
+        return schema.toString();
+    }
+
+    private ObjectNode stringArray(List<String> allowed) {
+        ObjectNode array = objectMapper.createObjectNode();
+        array.put("type", "ARRAY");
+        ObjectNode items = array.putObject("items");
+        items.put("type", "STRING");
+        // An empty enum is rejected by the API, so only constrain when there is something to pick
+        if (!allowed.isEmpty()) {
+            ArrayNode values = items.putArray("enum");
+            allowed.forEach(values::add);
+        }
+        return array;
+    }
+
+    private String buildRoutingPrompt(String query, List<Expert> experts) {
+        String expertsList = experts.isEmpty()
+            ? "(none available yet)"
+            : experts.stream()
+                .map(e -> String.format("- %s: %s", e.getName(),
+                    e.getDescription() != null ? e.getDescription() : "Expert on " + e.getName() + " domain"))
+                .collect(Collectors.joining("\n"));
+
+        return String.format("""
+            You are a routing system. Decide how this query should be handled.
+
+            Available Skills (general capabilities like time, data access to Slack conversations/history, search):
+            %s
+            Available Experts (domain-specific knowledge from documentation):
+            %s
+
+            User Query: "%s"
+
+            Rules:
+            - route is SKILL, EXPERT, BOTH, or NONE if neither skills nor experts can help
+            - skills: every skill that is relevant to answering the query (empty if none)
+            - experts: every expert whose documentation may contain the answer (empty if none)
+            - If query is about the bot itself, choose the "bot" expert
+            - If query spans multiple domains, list multiple experts
+            """,
+            skillRegistry.getSkillDescriptions(), expertsList, query
+        );
+    }
+
+    private String buildSkillsPrompt(String query) {
+        return String.format("""
+            You are a skill routing assistant. Given a user query and a list of available skills,
+            determine which skill(s) should be used to answer the query.
+
+            Available Skills:
+            %s
+
+            User Query: "%s"
+
+            Rules:
+            - skills: every skill that is relevant to answering the query
+            - Leave skills empty if none applies
+            """,
+            skillRegistry.getSkillDescriptions(), query
+        );
+    }
+
+    public record RoutingPlan(RouteDecision decision, List<String> skills, List<String> experts) {
     }
 
     public enum RouteDecision {
-        SKILL, EXPERT, BOTH
+        SKILL, EXPERT, BOTH, NONE;
+
+        boolean usesSkills() {
+            return this == SKILL || this == BOTH;
+        }
+
+        boolean usesExperts() {
+            return this == EXPERT || this == BOTH;
+        }
     }
 }
@@ -0,0 +1,49 @@
+package tools.needful.bruh.config;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for request-scoped concurrent work.
+ *
+ * Both capture the submitting thread's context (current observation / trace span,
+ * LLM call tally) and restore it on the worker, so work fanned out for a query is
+ * traced and counted as part of it.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    /**
+     * One virtual thread per Slack query being handled; how many run at once is
+     * QueryAdmission's call
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService queryExecutor() {
+        return propagating(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("query-", 0).factory()));
+    }
+
+    /**
+     * One virtual thread per retrieval branch (documentation search, per-expert searches)
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService retrievalExecutor() {
+        return propagating(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("retrieval-", 0).factory()));
+    }
+
+    /**
+     * One virtual thread per skill execution, see SkillExecutor
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService skillTaskExecutor() {
+        return propagating(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("skill-", 0).factory()));
+    }
+
+    private static ExecutorService propagating(ExecutorService executor) {
+        return ContextExecutorService.wrap(executor, ContextSnapshotFactory.builder().build());
+    }
+}
@@ -5,6 +5,8 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import tools.needful.bruh.gemini.EmbeddingCache;
+import tools.needful.bruh.gemini.GeminiBatchingStrategy;
 import tools.needful.bruh.gemini.GeminiApiChatModel;
 import tools.needful.bruh.gemini.GeminiApiClient;
 import tools.needful.bruh.gemini.GeminiEmbeddingClient;
@@ -27,7 +29,8 @@ public class GeminiConfig {
     }
 
     @Bean
-    public EmbeddingModel embeddingModel(GeminiEmbeddingClient embeddingClient) {
-        return new GeminiEmbeddingModel(embeddingClient);
+    public EmbeddingModel embeddingModel(GeminiEmbeddingClient embeddingClient, EmbeddingCache embeddingCache,
+                                         GeminiBatchingStrategy batchingStrategy) {
+        return new GeminiEmbeddingModel(embeddingClient, embeddingCache, batchingStrategy);
     }
 }
@@ -9,9 +9,9 @@ import org.springframework.ai.chroma.vectorstore.ChromaVectorStore;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.web.client.RestClient;
+import tools.needful.bruh.gemini.GeminiBatchingStrategy;
+import tools.needful.bruh.http.HttpTransport;
 
 /**
  * Manual configuration for ChromaDB VectorStore
@@ -29,35 +29,27 @@ public class VectorStoreConfig {
     private String collectionName;
 
     @Bean
-    public ChromaApi chromaApi(ObjectMapper objectMapper) {
+    public ChromaApi chromaApi(ObjectMapper objectMapper, HttpTransport httpTransport) {
         String baseUrl = String.format("http://%s:%d", chromaHost, chromaPort);
-        return new ChromaApi(baseUrl, RestClient.builder(), objectMapper);
+        return new ChromaApi(baseUrl, httpTransport.restClientBuilder("chroma"), objectMapper);
     }
 
+    /**
+     * Lazy so that no Chroma round trip happens during context startup; the store
+     * (and its tenant/database/collection checks) is initialized on first search.
+     * ChunkStore creates the schema for the background indexer independently.
+     */
     @Bean
-    public VectorStore vectorStore(ChromaApi chromaApi, EmbeddingModel embeddingModel) {
-        if  (chromaApi.getTenant(ChromaApiConstants.DEFAULT_TENANT_NAME) == null) {
-            chromaApi.createTenant(ChromaApiConstants.DEFAULT_TENANT_NAME);
-        }
-
-        if (chromaApi.getDatabase(ChromaApiConstants.DEFAULT_TENANT_NAME,
-                ChromaApiConstants.DEFAULT_DATABASE_NAME) == null) {
-            chromaApi.createDatabase(ChromaApiConstants.DEFAULT_TENANT_NAME, ChromaApiConstants.DEFAULT_DATABASE_NAME);
-        }
-
-        if (chromaApi.getCollection(ChromaApiConstants.DEFAULT_TENANT_NAME, ChromaApiConstants.DEFAULT_DATABASE_NAME,
-                collectionName) == null) {
-            var request = new ChromaApi.CreateCollectionRequest(collectionName);
-            chromaApi.createCollection(ChromaApiConstants.DEFAULT_TENANT_NAME,
-                    ChromaApiConstants.DEFAULT_DATABASE_NAME, request);
-        }
-
+    @Lazy
+    public VectorStore vectorStore(ChromaApi chromaApi, EmbeddingModel embeddingModel,
+                                   GeminiBatchingStrategy batchingStrategy) {
         return ChromaVectorStore.builder(chromaApi, embeddingModel)
                 .tenantName(ChromaApiConstants.DEFAULT_TENANT_NAME)
                 .databaseName(ChromaApiConstants.DEFAULT_DATABASE_NAME)
                 .collectionName(collectionName)
                 .initializeSchema(true)
                 .initializeImmediately(true)
+                .batchingStrategy(batchingStrategy)
                 .build();
     }
 }
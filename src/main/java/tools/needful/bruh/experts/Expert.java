@@ -2,6 +2,8 @@ package tools.needful.bruh.experts;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Data
@@ -14,4 +16,21 @@ public class Expert {
 
     @Builder.Default
     private LocalDateTime indexedAt = LocalDateTime.now();
+
+    @Builder.Default
+    private ExpertStatus status = ExpertStatus.READY;
+
+    // Progress of the current (or last) indexing run
+    private boolean indexing;
+    private int documentsProcessed;
+    private int chunksEmbedded;
+
+    // Unit-length mean of the expert's chunk embeddings, used for local routing
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private float[] centroid;
+
+    public boolean isReady() {
+        return status == ExpertStatus.READY;
+    }
 }
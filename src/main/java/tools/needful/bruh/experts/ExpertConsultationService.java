@@ -1,23 +1,46 @@
 package tools.needful.bruh.experts;
 
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.metrics.PipelineStage;
+import tools.needful.bruh.model.Deadline;
 import tools.needful.bruh.model.ExpertAnswer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ExpertConsultationService {
 
+    private static final int SEARCH_TOP_K = 5;
+    private static final double SIMILARITY_THRESHOLD = 0.7;
+
     @Autowired
     @Lazy
     private VectorStore vectorStore;
@@ -25,6 +48,31 @@ public class ExpertConsultationService {
     @Autowired
     private ChatClient.Builder chatClientBuilder;
 
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    @Qualifier("retrievalExecutor")
+    private ExecutorService retrievalExecutor;
+
+    @Value("${agent.retrieval.top-k:8}")
+    private int fusedTopK;
+
+    @Value("${agent.retrieval.per-expert-quota:4}")
+    private int perExpertQuota;
+
+    @Value("${agent.retrieval.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${agent.retrieval.speculative-top-k:40}")
+    private int speculativeTopK;
+
+    @Value("${agent.deadline.short-budget-ms:3000}")
+    private long shortBudgetMs;
+
     /**
      * Retrieves relevant documents from vector store for a query.
      * This is the RETRIEVAL step - does not generate an answer yet.
@@ -34,13 +82,17 @@ public class ExpertConsultationService {
      * @return List of relevant documents
      */
     public List<Document> retrieveRelevantDocuments(String expertName, String query) {
+        return retrieveRelevantDocuments(expertName, query, SEARCH_TOP_K);
+    }
+
+    private List<Document> retrieveRelevantDocuments(String expertName, String query, int topK) {
         log.info("Retrieving documents from expert '{}' for query: {}", expertName, query);
 
         // Build search request with optional expert filter
         SearchRequest.Builder builder = SearchRequest.builder()
             .query(query)
-            .topK(5)
-            .similarityThreshold(0.7);
+            .topK(topK)
+            .similarityThreshold(SIMILARITY_THRESHOLD);
 
         if (expertName != null) {
             builder.filterExpression(
@@ -53,12 +105,195 @@ public class ExpertConsultationService {
         SearchRequest searchRequest = builder.build();
 
         // Search Chroma
-        List<Document> relevantDocs = vectorStore.similaritySearch(searchRequest);
+        List<Document> relevantDocs = pipelineMetrics.stage(PipelineStage.VECTOR_SEARCH,
+            expertName != null ? expertName : "all", () -> vectorStore.similaritySearch(searchRequest));
 
         log.info("Retrieved {} relevant documents", relevantDocs.size());
         return relevantDocs;
     }
 
+    /**
+     * Unfiltered search across all experts, started by AgentCore while routing is still
+     * running. retrieveFromExperts then takes each routed expert's hits from it.
+     */
+    public List<Document> searchAllExperts(String query) {
+        SearchRequest searchRequest = SearchRequest.builder()
+            .query(query)
+            .topK(speculativeTopK)
+            .similarityThreshold(SIMILARITY_THRESHOLD)
+            .build();
+
+        List<Document> candidates = pipelineMetrics.stage(PipelineStage.VECTOR_SEARCH, "speculative",
+            () -> vectorStore.similaritySearch(searchRequest));
+
+        log.info("Speculative search returned {} candidates", candidates.size());
+        return candidates;
+    }
+
+    /**
+     * Searches several experts and merges the hits into one list.
+     *
+     * When a speculative search (searchAllExperts) was started, each expert's hits are
+     * taken from its candidates: ranks are global, so an expert's first hits in it are its
+     * own top hits. Only an expert with fewer than topK candidates in a truncated result
+     * (speculative-top-k hits, so more may be below the cut) gets a targeted search.
+     * Targeted searches run in parallel.
+     *
+     * Lists are fused with reciprocal rank fusion (score = sum of 1 / (rrf-k + rank)),
+     * ties broken by similarity, and no expert contributes more than per-expert-quota
+     * documents to the final top-k, so one verbose expert cannot crowd out the others.
+     *
+     * With less than short-budget-ms left on the deadline, every search and the fused
+     * list are halved (smaller prompt, faster synthesis), and searches still running
+     * when the deadline passes are cancelled and left out.
+     *
+     * @param speculative Pending searchAllExperts result for the same query, or null
+     */
+    public List<Document> retrieveFromExperts(List<String> expertNames, String query, Deadline deadline,
+                                              Future<List<Document>> speculative) {
+        boolean shortOnTime = !deadline.allows(Duration.ofMillis(shortBudgetMs));
+        int searchTopK = shortOnTime ? Math.max(1, SEARCH_TOP_K / 2) : SEARCH_TOP_K;
+        int topK = shortOnTime ? Math.max(1, fusedTopK / 2) : fusedTopK;
+        if (shortOnTime) {
+            log.info("Only {} left, searching experts with topK {} (fused {})", deadline, searchTopK, topK);
+        }
+
+        Map<String, List<Document>> speculativeHits = new HashMap<>();
+        List<String> misses = new ArrayList<>(expertNames);
+        List<Document> candidates = speculative != null ? awaitSpeculative(speculative, deadline) : null;
+        if (candidates != null) {
+            boolean exhaustive = candidates.size() < speculativeTopK;
+            misses.clear();
+            for (String expertName : expertNames) {
+                List<Document> hits = candidates.stream()
+                    .filter(doc -> expertName.equals(doc.getMetadata().get("expert")))
+                    .limit(searchTopK)
+                    .toList();
+                if (hits.size() < searchTopK && !exhaustive) {
+                    misses.add(expertName);
+                } else {
+                    speculativeHits.put(expertName, hits);
+                }
+            }
+            log.info("Speculative search covered {} of {} experts, targeted search for: {}",
+                speculativeHits.size(), expertNames.size(), misses);
+        }
+
+        Map<String, List<Document>> targetedHits = searchExperts(misses, query, searchTopK, deadline);
+
+        // Keep the routed order, fuse() breaks ownership ties by it
+        Map<String, List<Document>> resultsByExpert = new LinkedHashMap<>();
+        for (String expertName : expertNames) {
+            List<Document> hits = speculativeHits.getOrDefault(expertName, targetedHits.get(expertName));
+            if (hits != null) {
+                resultsByExpert.put(expertName, hits);
+            }
+        }
+
+        if (expertNames.size() == 1) {
+            return resultsByExpert.getOrDefault(expertNames.get(0), List.of());
+        }
+        return fuse(resultsByExpert, topK);
+    }
+
+    /**
+     * The speculative candidates, or null if the search failed or did not finish in time
+     */
+    private List<Document> awaitSpeculative(Future<List<Document>> speculative, Deadline deadline) {
+        try {
+            return speculative.get(deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            log.warn("Speculative search did not finish in time, falling back to targeted searches");
+        } catch (ExecutionException e) {
+            log.warn("Speculative search failed, falling back to targeted searches", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        speculative.cancel(true);
+        return null;
+    }
+
+    /**
+     * Per-expert filtered searches, in parallel when there are several
+     */
+    private Map<String, List<Document>> searchExperts(List<String> expertNames, String query, int searchTopK,
+                                                      Deadline deadline) {
+        Map<String, List<Document>> resultsByExpert = new HashMap<>();
+        if (expertNames.isEmpty() || Thread.currentThread().isInterrupted()) {
+            return resultsByExpert;
+        }
+        if (expertNames.size() == 1) {
+            resultsByExpert.put(expertNames.get(0), retrieveRelevantDocuments(expertNames.get(0), query, searchTopK));
+            return resultsByExpert;
+        }
+
+        // Embed once up front; the parallel searches then hit the embedding cache
+        embeddingModel.embed(query);
+
+        List<Callable<List<Document>>> searches = new ArrayList<>();
+        for (String expertName : expertNames) {
+            searches.add(deadline.wrap(() -> retrieveRelevantDocuments(expertName, query, searchTopK)));
+        }
+
+        try {
+            List<Future<List<Document>>> futures = retrievalExecutor.invokeAll(
+                searches, deadline.remaining().toNanos(), TimeUnit.NANOSECONDS);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    resultsByExpert.put(expertNames.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    log.warn("Search failed for expert '{}', continuing without it", expertNames.get(i), e.getCause());
+                } catch (CancellationException e) {
+                    log.warn("Search for expert '{}' ran past the deadline, continuing without it", expertNames.get(i));
+                }
+            }
+        } catch (InterruptedException e) {
+            // invokeAll cancels the searches that are still running
+            Thread.currentThread().interrupt();
+            resultsByExpert.clear();
+        }
+        return resultsByExpert;
+    }
+
+    private List<Document> fuse(Map<String, List<Document>> resultsByExpert, int topK) {
+        Map<String, Double> rrfScores = new HashMap<>();
+        Map<String, Document> documents = new HashMap<>();
+        Map<String, String> owners = new HashMap<>();
+
+        resultsByExpert.forEach((expertName, docs) -> {
+            for (int rank = 0; rank < docs.size(); rank++) {
+                Document doc = docs.get(rank);
+                rrfScores.merge(doc.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+                documents.putIfAbsent(doc.getId(), doc);
+                owners.putIfAbsent(doc.getId(), expertName);
+            }
+        });
+
+        Comparator<String> byFusedRank = Comparator.<String>comparingDouble(rrfScores::get).reversed()
+            .thenComparing(id -> similarity(documents.get(id)), Comparator.reverseOrder());
+
+        List<Document> fused = new ArrayList<>();
+        Map<String, Integer> taken = new HashMap<>();
+        for (String id : rrfScores.keySet().stream().sorted(byFusedRank).toList()) {
+            if (fused.size() >= topK) {
+                break;
+            }
+            String owner = owners.get(id);
+            if (taken.getOrDefault(owner, 0) >= perExpertQuota) {
+                continue;
+            }
+            taken.merge(owner, 1, Integer::sum);
+            fused.add(documents.get(id));
+        }
+
+        log.info("Fused {} documents from {} experts: {}", fused.size(), resultsByExpert.size(), taken);
+        return fused;
+    }
+
+    private static double similarity(Document doc) {
+        return doc.getScore() != null ? doc.getScore() : 0.0;
+    }
+
     /**
      * Legacy method - kept for backward compatibility.
      * Prefer using retrieveRelevantDocuments() + synthesis step.
@@ -86,10 +321,10 @@ public class ExpertConsultationService {
         String prompt = buildPrompt(expertName, context, query);
 
         ChatClient chatClient = chatClientBuilder.build();
-        String answer = chatClient.prompt()
+        String answer = pipelineMetrics.llmCall(LlmCallSite.EXPERT_ANSWER, () -> chatClient.prompt()
             .user(prompt)
             .call()
-            .content();
+            .content());
 
         // Extract sources
         List<String> sources = relevantDocs.stream()
@@ -3,16 +3,37 @@ package tools.needful.bruh.experts;
 import org.springframework.stereotype.Component;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Component
 public class ExpertRegistry {
 
     private final Map<String, Expert> experts = new ConcurrentHashMap<>();
+    private final AtomicLong indexVersion = new AtomicLong();
 
     public void register(Expert expert) {
         experts.put(expert.getName().toLowerCase(), expert);
     }
 
+    public void unregister(String name) {
+        if (experts.remove(name.toLowerCase()) != null) {
+            indexVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Bumped whenever searchable content changes (an expert's chunks were re-indexed,
+     * or an expert was removed); anything derived from earlier searches is stale
+     */
+    public long getIndexVersion() {
+        return indexVersion.get();
+    }
+
+    public void indexChanged() {
+        indexVersion.incrementAndGet();
+    }
+
     public Expert getExpert(String name) {
         return experts.get(name.toLowerCase());
     }
@@ -21,6 +42,51 @@ public class ExpertRegistry {
         return new ArrayList<>(experts.values());
     }
 
+    /**
+     * Experts whose chunks are searchable; the only ones routing may pick
+     */
+    public List<Expert> getReadyExperts() {
+        return experts.values().stream()
+            .filter(Expert::isReady)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Marks the start of an indexing run. Experts already in the registry (or
+     * restored from a manifest) stay READY while they refresh.
+     */
+    public void startIndexing(String name, Expert restored) {
+        experts.compute(name.toLowerCase(), (key, existing) -> {
+            Expert expert = existing != null ? existing : restored != null ? restored
+                : Expert.builder().name(name).status(ExpertStatus.INDEXING).build();
+            expert.setIndexing(true);
+            expert.setDocumentsProcessed(0);
+            expert.setChunksEmbedded(0);
+            return expert;
+        });
+    }
+
+    public void recordProgress(String name, int documents, int chunks) {
+        experts.computeIfPresent(name.toLowerCase(), (key, expert) -> {
+            expert.setDocumentsProcessed(expert.getDocumentsProcessed() + documents);
+            expert.setChunksEmbedded(expert.getChunksEmbedded() + chunks);
+            return expert;
+        });
+    }
+
+    /**
+     * Ends an indexing run that failed. Experts that were already searchable keep serving.
+     */
+    public void indexingFailed(String name) {
+        experts.computeIfPresent(name.toLowerCase(), (key, expert) -> {
+            expert.setIndexing(false);
+            if (!expert.isReady()) {
+                expert.setStatus(ExpertStatus.FAILED);
+            }
+            return expert;
+        });
+    }
+
     public int count() {
         return experts.size();
     }
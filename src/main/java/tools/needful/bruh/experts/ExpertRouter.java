@@ -2,12 +2,27 @@ package tools.needful.bruh.experts;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Picks the expert(s) for a query.
+ *
+ * Each expert carries a centroid of its chunk embeddings (built at index time), so
+ * the query embedding is first compared against those in memory. Only when that is
+ * ambiguous (best match below min-similarity, or the top two within expert-margin of
+ * each other) does routing fall back to asking the LLM.
+ */
 @Slf4j
 @Component
 public class ExpertRouter {
@@ -18,23 +33,45 @@ public class ExpertRouter {
     @Autowired
     private ChatClient.Builder chatClientBuilder;
 
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${agent.routing.min-similarity:0.35}")
+    private double minSimilarity;
+
+    @Value("${agent.routing.expert-margin:0.05}")
+    private double expertMargin;
+
     public List<String> routeToExperts(String query) {
+        if (expertRegistry.getReadyExperts().isEmpty()) {
+            log.info("No experts ready yet, skipping expert routing");
+            return List.of();
+        }
+
+        Optional<List<String>> local = routeLocally(embedQuery(query));
+        if (local.isPresent()) {
+            return local.get();
+        }
+
         String prompt = buildRoutingPrompt(query);
 
         ChatClient chatClient = chatClientBuilder.build();
-        String response = chatClient.prompt()
+        String response = pipelineMetrics.llmCall(LlmCallSite.EXPERT_ROUTING, () -> chatClient.prompt()
             .user(prompt)
             .call()
-            .content();
+            .content());
 
         // Parse response to get expert names
         // Simple implementation: look for expert names in response
-        List<String> selectedExperts = expertRegistry.getAllExperts().stream()
+        List<String> selectedExperts = expertRegistry.getReadyExperts().stream()
             .map(Expert::getName)
             .filter(name -> response.toLowerCase().contains(name.toLowerCase()))
             .collect(Collectors.toList());
 
-        if (selectedExperts.isEmpty()) {
+        if (selectedExperts.isEmpty() && isReady("bot")) {
             // Default to bot expert if nothing matches
             selectedExperts.add("bot");
         }
@@ -43,8 +80,77 @@ public class ExpertRouter {
         return selectedExperts;
     }
 
+    /**
+     * The query embedding, or null if it cannot be computed. The embedding cache makes
+     * the later vector search for the same query reuse it.
+     */
+    public float[] embedQuery(String query) {
+        try {
+            return embeddingModel.embed(query);
+        } catch (Exception e) {
+            log.warn("Could not embed query for local routing: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Routes by cosine similarity against expert centroids.
+     * Empty if the decision is ambiguous and should go to the LLM.
+     */
+    public Optional<List<String>> routeLocally(float[] queryVector) {
+        List<Expert> experts = expertRegistry.getReadyExperts();
+        if (queryVector == null || experts.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<ScoredExpert> scored = new ArrayList<>();
+        for (Expert expert : experts) {
+            if (expert.getCentroid() == null) {
+                // Cannot rule out an expert we know nothing about
+                return Optional.empty();
+            }
+            scored.add(new ScoredExpert(expert.getName(), cosine(queryVector, expert.getCentroid())));
+        }
+        scored.sort(Comparator.comparingDouble(ScoredExpert::score).reversed());
+
+        ScoredExpert best = scored.get(0);
+        double margin = scored.size() > 1 ? best.score() - scored.get(1).score() : Double.MAX_VALUE;
+        if (best.score() < minSimilarity || margin < expertMargin) {
+            log.info("Local expert routing ambiguous (best {} at {}, margin {}), asking LLM",
+                best.name(), String.format("%.3f", best.score()), String.format("%.3f", margin));
+            return Optional.empty();
+        }
+
+        log.info("Routed query locally to expert: {} (similarity {})", best.name(),
+            String.format("%.3f", best.score()));
+        return Optional.of(List.of(best.name()));
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    private record ScoredExpert(String name, double score) {
+    }
+
+    private boolean isReady(String name) {
+        Expert expert = expertRegistry.getExpert(name);
+        return expert != null && expert.isReady();
+    }
+
     private String buildRoutingPrompt(String query) {
-        String expertsList = expertRegistry.getAllExperts().stream()
+        String expertsList = expertRegistry.getReadyExperts().stream()
             .map(e -> String.format("- %s: Expert on %s domain",
                                     e.getName(), e.getName()))
             .collect(Collectors.joining("\n"));
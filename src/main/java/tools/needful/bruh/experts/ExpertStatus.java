@@ -0,0 +1,13 @@
+package tools.needful.bruh.experts;
+
+/**
+ * Indexing lifecycle of an expert. Only READY experts are routable.
+ */
+public enum ExpertStatus {
+    /** First index build in progress; no chunks to search yet */
+    INDEXING,
+    /** Searchable (possibly while a background refresh is running) */
+    READY,
+    /** First index build failed */
+    FAILED
+}
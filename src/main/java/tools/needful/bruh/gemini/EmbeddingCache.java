@@ -0,0 +1,369 @@
+package tools.needful.bruh.gemini;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.needful.bruh.vectorization.ContentHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent embedding cache keyed by (embedding model, SHA-256 of text).
+ *
+ * Vectors live in a memory-mapped file of fixed-size slots:
+ *   [header][slot 0][slot 1]...   slot = 32-byte key hash + 8-byte access stamp + dimensions * float32
+ * An all-zero key marks a free slot. Every get and put writes a monotonic access
+ * stamp into the slot; the index is rebuilt from the file on startup in stamp order,
+ * so least-recently-used eviction carries over restarts. When full, the least
+ * recently used entry's slot is reused.
+ *
+ * Writes are forced to disk every flush-every puts and at least every
+ * flush-interval-ms, so a crash loses at most that much, not the whole session.
+ *
+ * Metrics: bruh.embedding.cache{result=hit|miss}, bruh.embedding.cache.evictions
+ * (counters) and bruh.embedding.cache.size (gauge).
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    private static final int MAGIC = 0x42525545; // "BRUE"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int KEY_BYTES = 32;
+    private static final int STAMP_BYTES = Long.BYTES;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${gemini.embedding-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${gemini.embedding-cache.path:data/embedding-cache.bin}")
+    private String path;
+
+    @Value("${gemini.embedding-cache.max-entries:50000}")
+    private int maxEntries;
+
+    @Value("${gemini.api.embedding-dimensions:768}")
+    private int dimensions;
+
+    @Value("${gemini.embedding-cache.flush-every:256}")
+    private int flushEvery;
+
+    @Value("${gemini.embedding-cache.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // key hash (hex) -> slot, in access order for LRU eviction
+    private final LinkedHashMap<String, Integer> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "embedding-cache-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Last access stamp handed out; guarded by lock
+    private long clock;
+    // Puts not yet forced to disk; guarded by lock
+    private int unflushedPuts;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int slotBytes;
+
+    @PostConstruct
+    public void open() {
+        registerMetrics();
+        if (!enabled) {
+            log.info("Embedding cache disabled");
+            return;
+        }
+
+        slotBytes = KEY_BYTES + STAMP_BYTES + dimensions * Float.BYTES;
+        long fileBytes = HEADER_BYTES + (long) maxEntries * slotBytes;
+        if (fileBytes > Integer.MAX_VALUE) {
+            maxEntries = (Integer.MAX_VALUE - HEADER_BYTES) / slotBytes;
+            fileBytes = HEADER_BYTES + (long) maxEntries * slotBytes;
+            log.warn("Embedding cache capped at {} entries (2 GB mapping limit)", maxEntries);
+        }
+
+        try {
+            Path file = Paths.get(path);
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            boolean compatible = channel.size() == fileBytes && headerMatches();
+            if (!compatible) {
+                channel.truncate(0);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+
+            if (compatible) {
+                loadIndex();
+            } else {
+                writeHeader();
+                for (int slot = 0; slot < maxEntries; slot++) {
+                    freeSlots.add(slot);
+                }
+            }
+
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+            log.info("Embedding cache opened: {} ({} / {} entries)", file, index.size(), maxEntries);
+        } catch (IOException e) {
+            log.error("Failed to open embedding cache at {}, continuing without it", path, e);
+            close();
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        flusher.shutdownNow();
+        lock.lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close embedding cache", e);
+        } finally {
+            buffer = null;
+            channel = null;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached vector or null on a miss
+     */
+    public float[] get(String model, String text) {
+        if (!isOpen()) {
+            return null;
+        }
+
+        String hex = key(model, text);
+        lock.lock();
+        try {
+            Integer slot = index.get(hex);
+            if (slot == null || buffer == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            float[] vector = new float[dimensions];
+            int offset = slotOffset(slot);
+            buffer.putLong(offset + KEY_BYTES, ++clock);
+            offset += KEY_BYTES + STAMP_BYTES;
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] = buffer.getFloat(offset + i * Float.BYTES);
+            }
+            hits.incrementAndGet();
+            return vector;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String model, String text, float[] vector) {
+        if (!isOpen() || vector.length != dimensions) {
+            return;
+        }
+
+        String hex = key(model, text);
+        lock.lock();
+        try {
+            if (buffer == null) {
+                return;
+            }
+
+            Integer slot = index.get(hex);
+            if (slot == null) {
+                slot = freeSlots.poll();
+            }
+            if (slot == null) {
+                Iterator<Map.Entry<String, Integer>> eldest = index.entrySet().iterator();
+                slot = eldest.next().getValue();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+
+            // Clear the key first so a crash mid-write leaves a free slot, not a corrupt entry
+            int offset = slotOffset(slot);
+            buffer.put(offset, new byte[KEY_BYTES]);
+            buffer.putLong(offset + KEY_BYTES, ++clock);
+            for (int i = 0; i < dimensions; i++) {
+                buffer.putFloat(offset + KEY_BYTES + STAMP_BYTES + i * Float.BYTES, vector[i]);
+            }
+            buffer.put(offset, HexFormat.of().parseHex(hex));
+            index.put(hex, slot);
+
+            if (++unflushedPuts >= flushEvery) {
+                buffer.force();
+                unflushedPuts = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void registerMetrics() {
+        FunctionCounter.builder("bruh.embedding.cache", this, EmbeddingCache::getHits)
+            .description("Embedding cache lookups")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        FunctionCounter.builder("bruh.embedding.cache", this, EmbeddingCache::getMisses)
+            .description("Embedding cache lookups")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        FunctionCounter.builder("bruh.embedding.cache.evictions", this, EmbeddingCache::getEvictions)
+            .description("Embedding cache entries evicted to make room")
+            .register(meterRegistry);
+        Gauge.builder("bruh.embedding.cache.size", this, EmbeddingCache::size)
+            .description("Embeddings in the cache")
+            .register(meterRegistry);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces puts made since the last flush to disk
+     */
+    private void flush() {
+        lock.lock();
+        try {
+            if (buffer != null && unflushedPuts > 0) {
+                buffer.force();
+                unflushedPuts = 0;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush embedding cache", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isOpen() {
+        return enabled && buffer != null;
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private boolean headerMatches() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        channel.read(header, 0);
+        header.flip();
+        return header.remaining() == 16
+            && header.getInt() == MAGIC
+            && header.getInt() == VERSION
+            && header.getInt() == dimensions
+            && header.getInt() == maxEntries;
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, dimensions);
+        buffer.putInt(12, maxEntries);
+    }
+
+    /**
+     * Rebuilds the index oldest access first, so the LRU order is the one before the restart
+     */
+    private void loadIndex() {
+        byte[] key = new byte[KEY_BYTES];
+        List<StampedSlot> used = new ArrayList<>();
+        for (int slot = 0; slot < maxEntries; slot++) {
+            buffer.get(slotOffset(slot), key);
+            if (isZero(key)) {
+                freeSlots.add(slot);
+            } else {
+                used.add(new StampedSlot(HexFormat.of().formatHex(key), slot,
+                    buffer.getLong(slotOffset(slot) + KEY_BYTES)));
+            }
+        }
+        used.sort(Comparator.comparingLong(StampedSlot::stamp));
+        for (StampedSlot entry : used) {
+            index.put(entry.key(), entry.slot());
+            clock = Math.max(clock, entry.stamp());
+        }
+    }
+
+    private record StampedSlot(String key, int slot, long stamp) {
+    }
+
+    private static boolean isZero(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hex SHA-256 of model, a NUL separator and the text
+     */
+    private static String key(String model, String text) {
+        return ContentHash.sha256(model + '\u0000' + text);
+    }
+}
@@ -1,5 +1,7 @@
 package tools.needful.bruh.gemini;
 
+import io.micrometer.context.ContextSnapshot;
+import io.micrometer.context.ContextSnapshotFactory;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.model.ChatModel;
@@ -8,11 +10,19 @@ import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.content.Content;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import tools.needful.bruh.model.Deadline;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 
 /**
- * Spring AI ChatModel implementation that uses the direct Gemini API
+ * Spring AI ChatModel implementation that uses the direct Gemini API.
+ * stream() is backed by streamGenerateContent and emits one ChatResponse per text delta;
+ * the caller's Deadline and observation context are carried over to the thread that
+ * reads the stream.
  */
 public class GeminiApiChatModel implements ChatModel {
 
@@ -24,11 +34,7 @@ public class GeminiApiChatModel implements ChatModel {
 
     @Override
     public ChatResponse call(Prompt prompt) {
-        // Extract the user message from the prompt
-        String userMessage = prompt.getInstructions().stream()
-            .map(Content::getText)
-            .reduce("", (a, b) -> a + "\n" + b)
-            .trim();
+        String userMessage = userMessage(prompt);
 
         // Call Gemini API
         String responseText = geminiApiClient.generateContent(userMessage);
@@ -38,8 +44,40 @@ public class GeminiApiChatModel implements ChatModel {
         return new ChatResponse(List.of(generation));
     }
 
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        String userMessage = userMessage(prompt);
+        Deadline deadline = Deadline.current();
+        ContextSnapshot snapshot = ContextSnapshotFactory.builder().build().captureAll();
+
+        return Flux.<ChatResponse>create(sink -> {
+            try {
+                Callable<String> streaming = () -> geminiApiClient.streamGenerateContent(userMessage, chunk -> {
+                    if (sink.isCancelled()) {
+                        throw new CancellationException("Stream cancelled by subscriber");
+                    }
+                    sink.next(new ChatResponse(List.of(new Generation(new AssistantMessage(chunk)))));
+                });
+                snapshot.wrap(deadline != null ? deadline.wrap(streaming) : streaming).call();
+                sink.complete();
+            } catch (Exception e) {
+                sink.error(e);
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
     @Override
     public ChatOptions getDefaultOptions() {
         return null;
     }
+
+    /**
+     * Extract the user message from the prompt
+     */
+    private static String userMessage(Prompt prompt) {
+        return prompt.getInstructions().stream()
+            .map(Content::getText)
+            .reduce("", (a, b) -> a + "\n" + b)
+            .trim();
+    }
 }
@@ -1,7 +1,5 @@
 package tools.needful.bruh.gemini;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
@@ -10,13 +8,20 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import tools.needful.bruh.http.HttpTransport;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.model.Deadline;
 
-import java.util.HashMap;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Client for direct Gemini API calls using API key authentication
+ * Client for direct Gemini API calls using API key authentication.
+ * Honors the query Deadline bound to the calling thread: no call is started once it
+ * has passed, and HttpTransport caps the read timeout at the time left.
  */
 @Slf4j
 @Service
@@ -24,6 +29,9 @@ public class GeminiApiClient {
 
     private static final String GEMINI_API_URL = "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent";
 
+    private static final String GEMINI_STREAM_API_URL =
+        "https://generativelanguage.googleapis.com/v1beta/models/%s:streamGenerateContent?alt=sse";
+
     @Value("${gemini.api.key}")
     private String apiKey;
 
@@ -34,33 +42,49 @@ public class GeminiApiClient {
     private Double temperature;
 
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final GeminiJsonCodec codec;
+    private final PipelineMetrics pipelineMetrics;
 
-    public GeminiApiClient() {
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
+    public GeminiApiClient(HttpTransport httpTransport, PipelineMetrics pipelineMetrics) {
+        this.restTemplate = httpTransport.restTemplate("gemini");
+        this.codec = new GeminiJsonCodec();
+        this.pipelineMetrics = pipelineMetrics;
     }
 
     /**
      * Generate content using the Gemini API
      */
     public String generateContent(String prompt) {
+        return generateContent(prompt, temperature, null);
+    }
+
+    /**
+     * Generate structured output: the response text is JSON conforming to responseSchema
+     * (a Gemini Schema object, as raw JSON). Runs at temperature 0 for stable decisions.
+     */
+    public String generateStructuredContent(String prompt, String responseSchema) {
+        return generateContent(prompt, 0.0, responseSchema);
+    }
+
+    private String generateContent(String prompt, Double temperature, String responseSchema) {
+        checkDeadline();
         try {
             String url = String.format(GEMINI_API_URL, model);
 
             // Build request body
-            Map<String, Object> requestBody = buildRequestBody(prompt);
+            byte[] requestBody = codec.writeGenerateContentRequest(prompt, temperature, responseSchema);
 
             // Build headers
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.set("X-goog-api-key", apiKey);
 
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            HttpEntity<byte[]> request = new HttpEntity<>(requestBody, headers);
 
             // Make API call
             log.debug("Calling Gemini API with model: {}", model);
-            String response = restTemplate.exchange(url, HttpMethod.POST, request, String.class).getBody();
+            byte[] response = pipelineMetrics.geminiCall(responseSchema != null ? "generate_structured" : "generate",
+                model, () -> restTemplate.exchange(url, HttpMethod.POST, request, byte[].class).getBody());
 
             // Parse response
             return parseResponse(response);
@@ -72,57 +96,93 @@ public class GeminiApiClient {
     }
 
     /**
-     * Build the request body matching Gemini API format
+     * Stream content using the Gemini API (server-sent events).
+     * Each text delta is handed to onChunk as soon as it arrives; the full text is returned.
+     * Throwing from onChunk aborts the stream.
      */
-    private Map<String, Object> buildRequestBody(String prompt) {
-        Map<String, Object> textPart = new HashMap<>();
-        textPart.put("text", prompt);
-
-        Map<String, Object> part = new HashMap<>();
-        part.put("parts", List.of(textPart));
-
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("contents", List.of(part));
+    public String streamGenerateContent(String prompt, Consumer<String> onChunk) {
+        checkDeadline();
+        try {
+            String url = String.format(GEMINI_STREAM_API_URL, model);
+            byte[] requestBody = codec.writeGenerateContentRequest(prompt, temperature);
+
+            log.debug("Calling Gemini streaming API with model: {}", model);
+            return pipelineMetrics.geminiCall("stream", model, () -> restTemplate.execute(url, HttpMethod.POST,
+                request -> {
+                    request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                    request.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                    request.getHeaders().set("X-goog-api-key", apiKey);
+                    request.getBody().write(requestBody);
+                },
+                response -> {
+                    StringBuilder fullText = new StringBuilder();
+                    GeminiJsonCodec.TokenUsage usage = null;
+                    BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+
+                    // Each event is a single "data: {...}" line holding a partial GenerateContentResponse
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        byte[] chunk = line.substring(5).trim().getBytes(StandardCharsets.UTF_8);
+                        GeminiJsonCodec.GeneratedContent content = codec.readStreamedContent(chunk);
+                        String text = content.text();
+                        if (text != null && !text.isEmpty()) {
+                            fullText.append(text);
+                            onChunk.accept(text);
+                        }
+                        if (content.usage() != null) {
+                            // Counts are cumulative; the last chunk has the totals
+                            usage = content.usage();
+                        }
+                    }
+                    recordUsage(usage);
+                    return fullText.toString();
+                }));
 
-        // Add generation config if temperature is set
-        if (temperature != null) {
-            Map<String, Object> generationConfig = new HashMap<>();
-            generationConfig.put("temperature", temperature);
-            requestBody.put("generationConfig", generationConfig);
+        } catch (Exception e) {
+            log.error("Error calling Gemini streaming API", e);
+            throw new RuntimeException("Failed to stream content from Gemini API: " + e.getMessage(), e);
         }
+    }
 
-        return requestBody;
+    private static void checkDeadline() {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            throw new RuntimeException("Query deadline passed, not calling Gemini API");
+        }
     }
 
     /**
-     * Parse the Gemini API response to extract the generated text
+     * Parse the Gemini API response to extract the generated text; its token usage
+     * is recorded against the current LLM call site
      */
-    private String parseResponse(String response) {
+    private String parseResponse(byte[] response) {
+        GeminiJsonCodec.GeneratedContent content;
         try {
-            JsonNode root = objectMapper.readTree(response);
-
-            // Navigate: candidates[0].content.parts[0].text
-            JsonNode candidates = root.path("candidates");
-            if (candidates.isEmpty()) {
-                throw new RuntimeException("No candidates in response");
-            }
-
-            JsonNode content = candidates.get(0).path("content");
-            JsonNode parts = content.path("parts");
-            if (parts.isEmpty()) {
-                throw new RuntimeException("No parts in response");
-            }
-
-            JsonNode text = parts.get(0).path("text");
-            if (text.isMissingNode()) {
-                throw new RuntimeException("No text in response");
-            }
-
-            return text.asText();
+            // Navigate: candidates[0].content.parts[0].text, usageMetadata
+            content = codec.readGeneratedContent(response);
 
         } catch (Exception e) {
-            log.error("Error parsing Gemini API response: {}", response, e);
+            log.error("Error parsing Gemini API response: {}", asString(response), e);
             throw new RuntimeException("Failed to parse Gemini API response: " + e.getMessage(), e);
         }
+        recordUsage(content.usage());
+        return content.text();
+    }
+
+    private void recordUsage(GeminiJsonCodec.TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        log.debug("Gemini token usage: {} prompt ({} cached), {} candidates",
+            usage.promptTokens(), usage.cachedTokens(), usage.candidateTokens());
+        pipelineMetrics.recordTokens(usage.promptTokens(), usage.candidateTokens(), usage.cachedTokens());
+    }
+
+    private static String asString(byte[] response) {
+        return response == null ? null : new String(response, StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,66 @@
+package tools.needful.bruh.gemini;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Splits embedding inputs into batchEmbedContents-sized requests.
+ *
+ * A batch is closed when it reaches the configured item count or when adding the
+ * next text would push the request payload over the byte limit. A single text
+ * larger than the limit still goes out on its own; Gemini decides whether to reject it.
+ */
+@Component
+public class GeminiBatchingStrategy implements BatchingStrategy {
+
+    // JSON envelope per request: {"model":"models/...","content":{"parts":[{"text":"..."}]}}
+    private static final int REQUEST_OVERHEAD_BYTES = 128;
+
+    @Value("${gemini.api.embedding-batch-size:100}")
+    private int maxBatchSize;
+
+    @Value("${gemini.api.embedding-batch-max-bytes:1000000}")
+    private int maxBatchBytes;
+
+    @Override
+    public List<List<Document>> batch(List<Document> documents) {
+        return partition(documents, Document::getText);
+    }
+
+    public List<List<String>> partitionTexts(List<String> texts) {
+        return partition(texts, Function.identity());
+    }
+
+    private <T> List<List<T>> partition(List<T> items, Function<T, String> text) {
+        List<List<T>> batches = new ArrayList<>();
+        List<T> current = new ArrayList<>();
+        long currentBytes = 0;
+
+        for (T item : items) {
+            String content = text.apply(item);
+            long itemBytes = (content == null ? 0 : content.getBytes(StandardCharsets.UTF_8).length)
+                + REQUEST_OVERHEAD_BYTES;
+
+            if (!current.isEmpty() && (current.size() >= maxBatchSize || currentBytes + itemBytes > maxBatchBytes)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+
+            current.add(item);
+            currentBytes += itemBytes;
+        }
+
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+}
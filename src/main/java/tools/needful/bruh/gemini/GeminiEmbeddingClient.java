@@ -1,7 +1,5 @@
 package tools.needful.bruh.gemini;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
@@ -9,22 +7,30 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import tools.needful.bruh.http.HttpTransport;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.model.Deadline;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
- * Client for Gemini Embedding API
+ * Client for Gemini Embedding API.
+ * Query-time calls honor the Deadline bound to the calling thread (see GeminiApiClient).
  */
 @Slf4j
 @Service
 public class GeminiEmbeddingClient {
 
-    private static final String GEMINI_EMBEDDING_URL =
-        "https://generativelanguage.googleapis.com/v1beta/models/%s:embedContent";
+    private static final String GEMINI_BATCH_EMBEDDING_URL =
+        "https://generativelanguage.googleapis.com/v1beta/models/%s:batchEmbedContents";
+
+    private static final int MAX_ATTEMPTS = 3;
 
     @Value("${gemini.api.key}")
     private String apiKey;
@@ -33,84 +39,107 @@ public class GeminiEmbeddingClient {
     private String embeddingModel;
 
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final GeminiJsonCodec codec;
+    private final PipelineMetrics pipelineMetrics;
+
+    public GeminiEmbeddingClient(HttpTransport httpTransport, PipelineMetrics pipelineMetrics) {
+        this.restTemplate = httpTransport.restTemplate("gemini-embedding");
+        this.codec = new GeminiJsonCodec();
+        this.pipelineMetrics = pipelineMetrics;
+    }
 
-    public GeminiEmbeddingClient() {
-        this.restTemplate = new RestTemplate();
-        this.objectMapper = new ObjectMapper();
+    public String getModel() {
+        return embeddingModel;
     }
 
     /**
-     * Generate embeddings for a single text
+     * Generate embeddings for multiple texts with one batchEmbedContents request.
+     *
+     * Transient failures (429, 5xx, I/O) are retried with backoff and then thrown.
+     * If Gemini rejects the batch itself (other 4xx), it is bisected to isolate the
+     * offending input(s): the result keeps every vector that succeeded and holds
+     * null at the positions Gemini rejected individually.
      */
-    public List<Double> embed(String text) {
-        try {
-            String url = String.format(GEMINI_EMBEDDING_URL, embeddingModel);
-
-            // Build request body
-            Map<String, Object> requestBody = new HashMap<>();
-            Map<String, Object> content = new HashMap<>();
-            Map<String, String> part = new HashMap<>();
-            part.put("text", text);
-            content.put("parts", List.of(part));
-            requestBody.put("content", content);
-
-            // Build headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("X-goog-api-key", apiKey);
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+    public List<float[]> embedBatch(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
 
-            // Make API call
-            log.debug("Calling Gemini Embedding API with model: {}", embeddingModel);
-            String response = restTemplate.exchange(url, HttpMethod.POST, request, String.class).getBody();
+        try {
+            return sendBatchWithRetry(texts);
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode().value() == 429) {
+                throw new RuntimeException("Failed to generate embeddings from Gemini API: " + e.getMessage(), e);
+            }
 
-            // Parse response
-            return parseEmbeddingResponse(response);
+            if (texts.size() == 1) {
+                log.warn("Gemini rejected embedding input ({}): {}", e.getStatusCode(), e.getMessage());
+                List<float[]> rejected = new ArrayList<>(1);
+                rejected.add(null);
+                return rejected;
+            }
 
-        } catch (Exception e) {
-            log.error("Error calling Gemini Embedding API", e);
-            throw new RuntimeException("Failed to generate embeddings from Gemini API: " + e.getMessage(), e);
+            log.warn("Gemini rejected a batch of {} texts ({}), bisecting to isolate the failing input",
+                texts.size(), e.getStatusCode());
+            int mid = texts.size() / 2;
+            List<float[]> result = new ArrayList<>(embedBatch(texts.subList(0, mid)));
+            result.addAll(embedBatch(texts.subList(mid, texts.size())));
+            return result;
         }
     }
 
-    /**
-     * Generate embeddings for multiple texts
-     */
-    public List<List<Double>> embedBatch(List<String> texts) {
-        List<List<Double>> embeddings = new ArrayList<>();
-        for (String text : texts) {
-            embeddings.add(embed(text));
+    private List<float[]> sendBatchWithRetry(List<String> texts) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return sendBatch(texts);
+            } catch (HttpServerErrorException | ResourceAccessException | HttpClientErrorException.TooManyRequests e) {
+                long backoffMs = 500L << (attempt - 1);
+                Deadline deadline = Deadline.current();
+                if (attempt >= MAX_ATTEMPTS
+                    || (deadline != null && !deadline.allows(Duration.ofMillis(backoffMs)))) {
+                    throw e;
+                }
+                log.warn("Batch embedding attempt {}/{} failed ({}), retrying in {} ms",
+                    attempt, MAX_ATTEMPTS, e.getMessage(), backoffMs);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
         }
-        return embeddings;
     }
 
-    /**
-     * Parse the Gemini Embedding API response to extract the embedding vector
-     */
-    private List<Double> parseEmbeddingResponse(String response) {
-        try {
-            JsonNode root = objectMapper.readTree(response);
+    private List<float[]> sendBatch(List<String> texts) {
+        String url = String.format(GEMINI_BATCH_EMBEDDING_URL, embeddingModel);
 
-            // Navigate: embedding.values (array of floats)
-            JsonNode embedding = root.path("embedding");
-            JsonNode values = embedding.path("values");
+        // Build request body: one embedContent request per text
+        byte[] requestBody = codec.writeBatchEmbedContentsRequest(embeddingModel, texts);
 
-            if (values.isMissingNode() || !values.isArray()) {
-                throw new RuntimeException("No embedding values in response");
-            }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-goog-api-key", apiKey);
 
-            List<Double> result = new ArrayList<>();
-            for (JsonNode value : values) {
-                result.add(value.asDouble());
-            }
+        HttpEntity<byte[]> request = new HttpEntity<>(requestBody, headers);
 
-            return result;
+        log.debug("Calling Gemini Batch Embedding API with model: {} ({} texts)", embeddingModel, texts.size());
+        byte[] response = pipelineMetrics.geminiCall("batch_embed", embeddingModel,
+            () -> restTemplate.exchange(url, HttpMethod.POST, request, byte[].class).getBody());
+
+        return parseBatchEmbeddingResponse(response, texts.size());
+    }
+
+    /**
+     * Parse a batchEmbedContents response: embeddings[i].values, in request order
+     */
+    private List<float[]> parseBatchEmbeddingResponse(byte[] response, int expected) {
+        try {
+            return codec.readBatchEmbeddings(response, expected);
 
         } catch (Exception e) {
-            log.error("Error parsing Gemini Embedding API response: {}", response, e);
-            throw new RuntimeException("Failed to parse Gemini Embedding API response: " + e.getMessage(), e);
+            log.error("Error parsing Gemini Batch Embedding API response", e);
+            throw new RuntimeException("Failed to parse Gemini Batch Embedding API response: " + e.getMessage(), e);
         }
     }
 }
@@ -8,18 +8,35 @@ import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
 import org.springframework.ai.embedding.EmbeddingResponseMetadata;
 
+import lombok.extern.slf4j.Slf4j;
+
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Spring AI EmbeddingModel implementation that uses the Gemini Embedding API
+ * Spring AI EmbeddingModel implementation that uses the Gemini Embedding API.
+ * Every lookup goes through the persistent EmbeddingCache first; the remaining
+ * texts are sent in batchEmbedContents requests sized by GeminiBatchingStrategy.
  */
+@Slf4j
 public class GeminiEmbeddingModel extends AbstractEmbeddingModel {
 
     private final GeminiEmbeddingClient embeddingClient;
+    private final EmbeddingCache embeddingCache;
+    private final GeminiBatchingStrategy batchingStrategy;
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
 
-    public GeminiEmbeddingModel(GeminiEmbeddingClient embeddingClient) {
+    public GeminiEmbeddingModel(GeminiEmbeddingClient embeddingClient, EmbeddingCache embeddingCache,
+                                GeminiBatchingStrategy batchingStrategy) {
         this.embeddingClient = embeddingClient;
+        this.embeddingCache = embeddingCache;
+        this.batchingStrategy = batchingStrategy;
     }
 
     @Override
@@ -35,18 +52,11 @@ public class GeminiEmbeddingModel extends AbstractEmbeddingModel {
             }
         }
 
-        // Call Gemini Embedding API for each text
-        List<Embedding> embeddings = new ArrayList<>();
-        for (int i = 0; i < texts.size(); i++) {
-            List<Double> embeddingValues = embeddingClient.embed(texts.get(i));
-
-            // Convert List<Double> to float[]
-            float[] embeddingArray = new float[embeddingValues.size()];
-            for (int j = 0; j < embeddingValues.size(); j++) {
-                embeddingArray[j] = embeddingValues.get(j).floatValue();
-            }
+        List<float[]> vectors = embedTexts(texts);
 
-            embeddings.add(new Embedding(embeddingArray, i));
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            embeddings.add(new Embedding(vectors.get(i), i));
         }
 
         return new EmbeddingResponse(embeddings, new EmbeddingResponseMetadata());
@@ -54,28 +64,36 @@ public class GeminiEmbeddingModel extends AbstractEmbeddingModel {
 
     @Override
     public float[] embed(Document document) {
-        List<Double> embeddingValues = embeddingClient.embed(document.getText());
-
-        // Convert List<Double> to float[]
-        float[] embeddingArray = new float[embeddingValues.size()];
-        for (int j = 0; j < embeddingValues.size(); j++) {
-            embeddingArray[j] = embeddingValues.get(j).floatValue();
-        }
-
-        return embeddingArray;
+        return embedTexts(List.of(document.getText())).get(0);
     }
 
+    /**
+     * Concurrent calls for the same text share one lookup: at query time routing and the
+     * speculative vector search embed the query at the same moment, before either can
+     * find it in the cache.
+     */
     @Override
     public float[] embed(String text) {
-        List<Double> embeddingValues = embeddingClient.embed(text);
-
-        // Convert List<Double> to float[]
-        float[] embeddingArray = new float[embeddingValues.size()];
-        for (int j = 0; j < embeddingValues.size(); j++) {
-            embeddingArray[j] = embeddingValues.get(j).floatValue();
+        CompletableFuture<float[]> own = new CompletableFuture<>();
+        CompletableFuture<float[]> pending = inFlight.putIfAbsent(text, own);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
         }
 
-        return embeddingArray;
+        try {
+            float[] vector = embedTexts(List.of(text)).get(0);
+            own.complete(vector);
+            return vector;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(text, own);
+        }
     }
 
     @Override
@@ -83,4 +101,62 @@ public class GeminiEmbeddingModel extends AbstractEmbeddingModel {
         // text-embedding-004 produces 768-dimensional embeddings
         return 768;
     }
+
+    /**
+     * Embeds texts in input order. Cache misses are de-duplicated and sent in
+     * batches; every batch that succeeds is cached before the next one is sent,
+     * so a failure part-way through only costs the texts that actually failed.
+     */
+    private List<float[]> embedTexts(List<String> texts) {
+        String model = embeddingClient.getModel();
+        Map<String, float[]> resolved = new HashMap<>();
+        LinkedHashSet<String> missing = new LinkedHashSet<>();
+
+        for (String text : texts) {
+            if (resolved.containsKey(text) || missing.contains(text)) {
+                continue;
+            }
+            float[] cached = embeddingCache.get(model, text);
+            if (cached != null) {
+                resolved.put(text, cached);
+            } else {
+                missing.add(text);
+            }
+        }
+
+        RuntimeException lastFailure = null;
+        int failed = 0;
+        for (List<String> batch : batchingStrategy.partitionTexts(new ArrayList<>(missing))) {
+            List<float[]> values;
+            try {
+                values = embeddingClient.embedBatch(batch);
+            } catch (RuntimeException e) {
+                log.warn("Embedding batch of {} texts failed: {}", batch.size(), e.getMessage());
+                lastFailure = e;
+                failed += batch.size();
+                continue;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (values.get(i) == null) {
+                    failed++;
+                    continue;
+                }
+                float[] vector = values.get(i);
+                embeddingCache.put(model, batch.get(i), vector);
+                resolved.put(batch.get(i), vector);
+            }
+        }
+
+        if (failed > 0) {
+            throw new RuntimeException(String.format("Failed to embed %d of %d texts (successful batches were cached)",
+                failed, missing.size()), lastFailure);
+        }
+
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(resolved.get(text));
+        }
+        return vectors;
+    }
 }
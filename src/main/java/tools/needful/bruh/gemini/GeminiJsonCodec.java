@@ -0,0 +1,310 @@
+package tools.needful.bruh.gemini;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming JSON codec for the Gemini REST payloads.
+ *
+ * Request bodies are written straight to bytes with a JsonGenerator and responses
+ * are read token by token, so no intermediate Map or JsonNode tree is built and
+ * embedding values land directly in a float[] without boxing. Numbers go through
+ * Jackson's fast double parser; see GeminiJsonCodecBenchmark (src/jmh) for the
+ * comparison with readTree.
+ */
+public class GeminiJsonCodec {
+
+    private static final int DEFAULT_DIMENSIONS = 768;
+
+    private final JsonFactory jsonFactory = JsonFactory.builder()
+        .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+        .build();
+
+    /**
+     * {"contents":[{"parts":[{"text":...}]}],"generationConfig":{"temperature":...}}
+     */
+    public byte[] writeGenerateContentRequest(String prompt, Double temperature) {
+        return writeGenerateContentRequest(prompt, temperature, null);
+    }
+
+    /**
+     * Same as above; with a responseSchema (raw JSON) the model is asked for
+     * structured output: generationConfig.responseMimeType = application/json
+     */
+    public byte[] writeGenerateContentRequest(String prompt, Double temperature, String responseSchema) {
+        int schemaLength = responseSchema == null ? 0 : responseSchema.length();
+        ByteArrayBuilder out = new ByteArrayBuilder(prompt.length() + schemaLength + 128);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("contents");
+            writeContent(gen, prompt);
+            gen.writeEndArray();
+
+            if (temperature != null || responseSchema != null) {
+                gen.writeObjectFieldStart("generationConfig");
+                if (temperature != null) {
+                    gen.writeNumberField("temperature", temperature);
+                }
+                if (responseSchema != null) {
+                    gen.writeStringField("responseMimeType", "application/json");
+                    gen.writeFieldName("responseSchema");
+                    gen.writeRawValue(responseSchema);
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * {"requests":[{"model":"models/<model>","content":{"parts":[{"text":...}]}}, ...]}
+     */
+    public byte[] writeBatchEmbedContentsRequest(String model, List<String> texts) {
+        ByteArrayBuilder out = new ByteArrayBuilder(texts.size() * 256);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            String modelName = "models/" + model;
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("requests");
+            for (String text : texts) {
+                gen.writeStartObject();
+                gen.writeStringField("model", modelName);
+                gen.writeFieldName("content");
+                writeContent(gen, text);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads candidates[0].content.parts[0].text and usageMetadata from a generateContent response
+     */
+    public GeneratedContent readGeneratedContent(byte[] response) throws IOException {
+        GeneratedContent content = readContent(response);
+        if (content.text() == null) {
+            throw new IOException("No text in response");
+        }
+        return content;
+    }
+
+    /**
+     * Reads one streamGenerateContent chunk. The text is null if the chunk carries
+     * none (e.g. the final chunk with only finishReason / usageMetadata).
+     */
+    public GeneratedContent readStreamedContent(byte[] chunk) throws IOException {
+        return readContent(chunk);
+    }
+
+    private GeneratedContent readContent(byte[] response) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, "response");
+            String text = null;
+            TokenUsage usage = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("candidates".equals(field) && value == JsonToken.START_ARRAY) {
+                    text = readFirstCandidateText(parser);
+                } else if ("usageMetadata".equals(field) && value == JsonToken.START_OBJECT) {
+                    usage = readUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new GeneratedContent(text, usage);
+        }
+    }
+
+    /**
+     * With the parser on the candidates array, returns the first candidate's first
+     * text part and leaves the parser on the END_ARRAY
+     */
+    private static String readFirstCandidateText(JsonParser parser) throws IOException {
+        String text = null;
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("content".equals(field) && value == JsonToken.START_OBJECT) {
+                        text = readPartsText(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return text;
+    }
+
+    /**
+     * With the parser inside a content object, returns the first text part and
+     * leaves the parser on the content's END_OBJECT
+     */
+    private static String readPartsText(JsonParser parser) throws IOException {
+        String text = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (!"parts".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String partField = parser.currentName();
+                    JsonToken partValue = parser.nextToken();
+                    if (text == null && "text".equals(partField) && partValue == JsonToken.VALUE_STRING) {
+                        text = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Reads promptTokenCount / candidatesTokenCount / cachedContentTokenCount,
+     * leaving the parser on the usageMetadata END_OBJECT
+     */
+    private static TokenUsage readUsage(JsonParser parser) throws IOException {
+        int prompt = 0;
+        int candidates = 0;
+        int cached = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "promptTokenCount" -> prompt = parser.getIntValue();
+                case "candidatesTokenCount" -> candidates = parser.getIntValue();
+                case "cachedContentTokenCount" -> cached = parser.getIntValue();
+                default -> { }
+            }
+        }
+        return new TokenUsage(prompt, candidates, cached);
+    }
+
+    /**
+     * Generated text (null if the response carried none) and the token usage Gemini
+     * reported for it (null if absent; streamed chunks only carry it near the end)
+     */
+    public record GeneratedContent(String text, TokenUsage usage) {
+    }
+
+    /**
+     * Token counts from usageMetadata. Cached tokens are part of the prompt count.
+     */
+    public record TokenUsage(int promptTokens, int candidateTokens, int cachedTokens) {
+    }
+
+    /**
+     * Reads embeddings[i].values from a batchEmbedContents response, in request order
+     */
+    public List<float[]> readBatchEmbeddings(byte[] response, int expected) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT, "response");
+            if (!seekField(parser, "embeddings") || parser.currentToken() != JsonToken.START_ARRAY) {
+                throw new IOException("No embeddings in batch response");
+            }
+
+            List<float[]> result = new ArrayList<>(expected);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                result.add(readValues(parser));
+                // Skip whatever follows "values" in this embedding object
+                while (parser.nextToken() != JsonToken.END_OBJECT) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+
+            if (result.size() != expected) {
+                throw new IOException("Expected " + expected + " embeddings, got " + result.size());
+            }
+            return result;
+        }
+    }
+
+    private static void writeContent(JsonGenerator gen, String text) throws IOException {
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("parts");
+        gen.writeStartObject();
+        gen.writeStringField("text", text);
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * With the parser inside an embedding object, reads its "values" array.
+     * Leaves the parser on the END_ARRAY of values.
+     */
+    private static float[] readValues(JsonParser parser) throws IOException {
+        if (!seekField(parser, "values") || parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("No embedding values in response");
+        }
+
+        float[] values = new float[DEFAULT_DIMENSIONS];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = (float) parser.getDoubleValue();
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Advances through the current object until the named field, leaving the parser
+     * on its value. Returns false if the object ends first.
+     */
+    private static boolean seekField(JsonParser parser, String name) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            boolean match = name.equals(parser.currentName());
+            parser.nextToken();
+            if (match) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        if (token == null) {
+            throw new IOException("Unexpected end of response");
+        }
+        return false;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, String what) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Malformed " + what + ": expected " + expected + " but got " + actual);
+        }
+    }
+}
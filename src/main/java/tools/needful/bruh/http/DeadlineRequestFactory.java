@@ -0,0 +1,60 @@
+package tools.needful.bruh.http;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import tools.needful.bruh.model.Deadline;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Request factory whose read timeout is the endpoint's timeout or the time left
+ * on the calling thread's Deadline, whichever is shorter. Requests are refused
+ * outright once the deadline has passed.
+ *
+ * https URIs go through the HTTP/2 client; plain http URIs (Chroma) through the
+ * HTTP/1.1 one, since an HTTP/2 client would attempt an h2c upgrade on every new
+ * plaintext connection.
+ */
+class DeadlineRequestFactory implements ClientHttpRequestFactory {
+
+    private final HttpClient tlsClient;
+    private final HttpClient plaintextClient;
+    private final Duration readTimeout;
+    private final JdkClientHttpRequestFactory unboundedTls;
+    private final JdkClientHttpRequestFactory unboundedPlaintext;
+
+    DeadlineRequestFactory(HttpClient tlsClient, HttpClient plaintextClient, Duration readTimeout) {
+        this.tlsClient = tlsClient;
+        this.plaintextClient = plaintextClient;
+        this.readTimeout = readTimeout;
+        this.unboundedTls = factory(tlsClient, readTimeout);
+        this.unboundedPlaintext = factory(plaintextClient, readTimeout);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        boolean plaintext = "http".equalsIgnoreCase(uri.getScheme());
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return (plaintext ? unboundedPlaintext : unboundedTls).createRequest(uri, httpMethod);
+        }
+        if (deadline.isExpired()) {
+            throw new SocketTimeoutException("Query deadline passed before request to " + uri.getHost());
+        }
+        // The factory is only a holder for client + timeout, so one per request is cheap
+        return factory(plaintext ? plaintextClient : tlsClient, deadline.cap(readTimeout))
+            .createRequest(uri, httpMethod);
+    }
+
+    private static JdkClientHttpRequestFactory factory(HttpClient httpClient, Duration timeout) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(timeout);
+        return factory;
+    }
+}
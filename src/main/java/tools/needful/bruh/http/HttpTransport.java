@@ -0,0 +1,107 @@
+package tools.needful.bruh.http;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Shared outbound HTTP transport for Gemini and Chroma.
+ *
+ * Two JDK HttpClients with keep-alive connection pools back every client, so
+ * connections and TLS sessions are reused across them: HTTP/2 (ALPN-negotiated,
+ * HTTP/1.1 fallback) for https endpoints, and plain HTTP/1.1 for http endpoints
+ * like a local Chroma, which does not support the h2c upgrade.
+ * Each named endpoint gets its own request factory with its own read timeout:
+ *
+ *   http.endpoints.<name>.read-timeout   (falls back to http.read-timeout)
+ *
+ * A query Deadline bound to the calling thread shortens the read timeout to the
+ * time left (DeadlineRequestFactory). Responses are requested gzip-compressed and
+ * every call is recorded per host in HttpTransportMetrics.
+ *
+ * The pool's idle keep-alive is JVM-wide (jdk.httpclient.keepalive.timeout) and is
+ * set in BruhApplication.main, before anything builds an HttpClient.
+ */
+@Slf4j
+@Component
+public class HttpTransport {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private HttpTransportMetrics metrics;
+
+    @Value("${http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${http.read-timeout:30s}")
+    private Duration defaultReadTimeout;
+
+    @Value("${http.gzip:true}")
+    private boolean gzip;
+
+    private HttpClient tlsClient;
+    private HttpClient plaintextClient;
+
+    @PostConstruct
+    public void init() {
+        tlsClient = newClient(HttpClient.Version.HTTP_2);
+        plaintextClient = newClient(HttpClient.Version.HTTP_1_1);
+
+        log.info("HTTP transport ready (HTTP/2 over TLS, HTTP/1.1 plaintext, connect timeout {}, keep-alive {}s)",
+            connectTimeout, System.getProperty("jdk.httpclient.keepalive.timeout"));
+    }
+
+    private HttpClient newClient(HttpClient.Version version) {
+        return HttpClient.newBuilder()
+            .version(version)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+    /**
+     * RestTemplate for the named endpoint, backed by the shared connection pool
+     */
+    public RestTemplate restTemplate(String endpoint) {
+        RestTemplate restTemplate = new RestTemplate(requestFactory(endpoint));
+        restTemplate.getInterceptors().add(metrics);
+        if (gzip) {
+            restTemplate.getInterceptors().add(new GzipInterceptor());
+        }
+        return restTemplate;
+    }
+
+    /**
+     * RestClient.Builder for the named endpoint, backed by the shared connection pool
+     */
+    public RestClient.Builder restClientBuilder(String endpoint) {
+        return RestClient.builder()
+            .requestFactory(requestFactory(endpoint))
+            .requestInterceptors(interceptors -> {
+                interceptors.add(metrics);
+                if (gzip) {
+                    interceptors.add(new GzipInterceptor());
+                }
+            });
+    }
+
+    public Duration readTimeout(String endpoint) {
+        return environment.getProperty("http.endpoints." + endpoint + ".read-timeout", Duration.class,
+            defaultReadTimeout);
+    }
+
+    private ClientHttpRequestFactory requestFactory(String endpoint) {
+        return new DeadlineRequestFactory(tlsClient, plaintextClient, readTimeout(endpoint));
+    }
+}
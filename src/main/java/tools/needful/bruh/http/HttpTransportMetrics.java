@@ -0,0 +1,97 @@
+package tools.needful.bruh.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host meters for outbound calls made through HttpTransport:
+ * bruh.http.client.requests{host} (timer), bruh.http.client.errors{host} and
+ * bruh.http.client.in.flight{host} (gauge). snapshot() reads the same meters.
+ *
+ * The JDK client does not expose its connection pool, so in-flight requests
+ * stand in for open connections and latency shows when setup dominates.
+ */
+@Component
+public class HttpTransportMetrics implements ClientHttpRequestInterceptor {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        HostStats stats = hosts.computeIfAbsent(request.getURI().getHost(), this::register);
+        stats.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (response.getStatusCode().isError()) {
+                stats.errors.increment();
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            stats.errors.increment();
+            throw e;
+        } finally {
+            stats.inFlight.decrementAndGet();
+            stats.requests.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Per-host view of the meters; max latency is the recent maximum (Micrometer's decaying max)
+     */
+    public List<HostSnapshot> snapshot() {
+        return hosts.entrySet().stream()
+            .map(entry -> entry.getValue().snapshot(entry.getKey()))
+            .sorted(Comparator.comparing(HostSnapshot::host))
+            .toList();
+    }
+
+    private HostStats register(String host) {
+        AtomicLong inFlight = new AtomicLong();
+        Gauge.builder("bruh.http.client.in.flight", inFlight, AtomicLong::get)
+            .description("Outbound HTTP requests in flight")
+            .tag("host", host)
+            .register(meterRegistry);
+        Timer requests = Timer.builder("bruh.http.client.requests")
+            .description("Outbound HTTP requests")
+            .tag("host", host)
+            .register(meterRegistry);
+        Counter errors = Counter.builder("bruh.http.client.errors")
+            .description("Outbound HTTP requests that failed or returned an error status")
+            .tag("host", host)
+            .register(meterRegistry);
+        return new HostStats(requests, errors, inFlight);
+    }
+
+    public record HostSnapshot(String host, long requests, long errors, long inFlight,
+                               double avgLatencyMs, double maxLatencyMs) {
+    }
+
+    private record HostStats(Timer requests, Counter errors, AtomicLong inFlight) {
+
+        HostSnapshot snapshot(String host) {
+            return new HostSnapshot(host, requests.count(), (long) errors.count(), inFlight.get(),
+                requests.mean(TimeUnit.MILLISECONDS), requests.max(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package tools.needful.bruh.metrics;
+
+/**
+ * Places in the code that make a generation call to Gemini, the "site" tag of
+ * bruh.llm.calls and bruh.llm.calls.per.query
+ */
+public enum LlmCallSite {
+    ROUTING,                // QueryRouter structured call for route, skills and experts (centroids ambiguous)
+    SKILL_ROUTING,          // QueryRouter structured skills-only call (experts routed by centroid)
+                            // and SkillRouter.routeToSkills (QueryRouter fallback)
+    EXPERT_ROUTING,         // ExpertRouter.routeToExperts (QueryRouter fallback, centroids ambiguous)
+    SLACK_QUERY_REWRITE,    // SlackSearchSkill search query generation
+    SLACK_SUFFICIENCY,      // SlackSearchSkill sufficiency checks and context extraction
+    SYNTHESIS,              // AgentCore final answer, blocking and streamed
+    EXPERT_ANSWER;          // ExpertConsultationService.consultExpert (legacy)
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
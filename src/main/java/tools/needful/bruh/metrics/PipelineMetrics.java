@@ -0,0 +1,253 @@
+package tools.needful.bruh.metrics;
+
+import io.micrometer.context.ContextRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation of the query pipeline.
+ *
+ * Everything is an Observation, so each one becomes both a timer (exported at
+ * /actuator/prometheus) and a trace span:
+ *
+ *   bruh.query    one per Slack mention, end to end          tags: mode
+ *   bruh.stage    routing, each skill, each vector search...  tags: stage, name
+ *   bruh.gemini   each Gemini HTTP call                       tags: operation, model
+ *
+ * LLM generation calls are made through llmCall(site, ...), which counts them per call
+ * site (bruh.llm.calls) and tags the token usage Gemini reports for them
+ * (bruh.llm.tokens, type = prompt / candidates / cached). At the end of each query the
+ * calls each site made are recorded (bruh.llm.calls.per.query) and a usage summary
+ * is logged. The query's tally and the current call site are ThreadLocals registered
+ * with context-propagation, so they follow the query onto the executors wrapped in
+ * ConcurrencyConfig.
+ */
+@Slf4j
+@Component
+public class PipelineMetrics {
+
+    private static final ThreadLocal<LlmCallTally> TALLY = new ThreadLocal<>();
+    private static final ThreadLocal<LlmCallSite> CALL_SITE = new ThreadLocal<>();
+
+    @Autowired
+    private ObservationRegistry observationRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        ContextRegistry.getInstance().registerThreadLocalAccessor("bruh.llm-call-tally", TALLY);
+        ContextRegistry.getInstance().registerThreadLocalAccessor("bruh.llm-call-site", CALL_SITE);
+    }
+
+    /**
+     * Runs the handling of one query; its LLM calls are tallied and recorded when it ends.
+     * Returns the Gemini tokens (prompt + output) the query consumed.
+     */
+    public long query(String mode, Runnable work) {
+        LlmCallTally tally = new LlmCallTally();
+        LlmCallTally previous = TALLY.get();
+        TALLY.set(tally);
+        try {
+            Observation.createNotStarted("bruh.query", observationRegistry)
+                .lowCardinalityKeyValue("mode", mode)
+                .contextualName("query")
+                .observe(work);
+        } finally {
+            if (previous == null) {
+                TALLY.remove();
+            } else {
+                TALLY.set(previous);
+            }
+            record(tally);
+        }
+        return tally.totalPromptTokens() + tally.totalCandidateTokens();
+    }
+
+    public <T> T stage(PipelineStage stage, String name, Supplier<T> work) {
+        return stageObservation(stage, name).observe(work);
+    }
+
+    public void stage(PipelineStage stage, String name, Runnable work) {
+        stageObservation(stage, name).observe(work);
+    }
+
+    public <T, E extends Throwable> T stageChecked(PipelineStage stage, String name,
+                                                   Observation.CheckedCallable<T, E> work) throws E {
+        return stageObservation(stage, name).observeChecked(work);
+    }
+
+    /**
+     * Starts a stage that completes asynchronously; the caller stops it
+     */
+    public Observation startStage(PipelineStage stage, String name) {
+        return stageObservation(stage, name).start();
+    }
+
+    public <T> T geminiCall(String operation, String model, Supplier<T> work) {
+        return Observation.createNotStarted("bruh.gemini", observationRegistry)
+            .lowCardinalityKeyValue("operation", operation)
+            .lowCardinalityKeyValue("model", model)
+            .contextualName("gemini " + operation)
+            .observe(work);
+    }
+
+    /**
+     * Makes an LLM generation call on behalf of the given call site
+     */
+    public <T> T llmCall(LlmCallSite site, Supplier<T> call) {
+        meterRegistry.counter("bruh.llm.calls", "site", site.tag()).increment();
+        LlmCallTally tally = TALLY.get();
+        if (tally != null) {
+            tally.increment(site);
+        }
+
+        LlmCallSite previous = CALL_SITE.get();
+        CALL_SITE.set(site);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CALL_SITE.remove();
+            } else {
+                CALL_SITE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * A query answered by waiting on an identical one already in flight
+     */
+    public void recordCoalesced() {
+        meterRegistry.counter("bruh.query.coalesced").increment();
+    }
+
+    /**
+     * Token usage reported by Gemini for one call, attributed to the current call site
+     */
+    public void recordTokens(int promptTokens, int candidateTokens, int cachedTokens) {
+        LlmCallSite site = CALL_SITE.get();
+        String siteTag = site != null ? site.tag() : "untagged";
+        tokens(siteTag, "prompt").increment(promptTokens);
+        tokens(siteTag, "candidates").increment(candidateTokens);
+        tokens(siteTag, "cached").increment(cachedTokens);
+
+        LlmCallTally tally = TALLY.get();
+        if (tally != null && site != null) {
+            tally.addTokens(site, promptTokens, candidateTokens, cachedTokens);
+        }
+    }
+
+    private Counter tokens(String site, String type) {
+        return Counter.builder("bruh.llm.tokens")
+            .description("Gemini tokens billed, by call site")
+            .tag("site", site)
+            .tag("type", type)
+            .register(meterRegistry);
+    }
+
+    private Observation stageObservation(PipelineStage stage, String name) {
+        String tag = name != null ? name : "none";
+        return Observation.createNotStarted("bruh.stage", observationRegistry)
+            .lowCardinalityKeyValue("stage", stage.tag())
+            .lowCardinalityKeyValue("name", tag)
+            .contextualName(name != null ? stage.tag() + " " + name : stage.tag());
+    }
+
+    /**
+     * Every site is recorded for every query (zeros included) so the mean is calls per query
+     */
+    private void record(LlmCallTally tally) {
+        long total = 0;
+        StringBuilder summary = new StringBuilder();
+        for (LlmCallSite site : LlmCallSite.values()) {
+            long count = tally.calls(site);
+            total += count;
+            perQuery(site.tag()).record(count);
+            if (count > 0) {
+                summary.append(String.format(" | %s: %d call(s), %d/%d/%d", site.tag(), count,
+                    tally.promptTokens(site), tally.candidateTokens(site), tally.cachedTokens(site)));
+            }
+        }
+        perQuery("all").record(total);
+
+        if (total > 0) {
+            log.info("LLM usage for query: {} call(s), {} prompt / {} output / {} cached tokens{}",
+                total, tally.totalPromptTokens(), tally.totalCandidateTokens(), tally.totalCachedTokens(), summary);
+        }
+    }
+
+    private DistributionSummary perQuery(String site) {
+        return DistributionSummary.builder("bruh.llm.calls.per.query")
+            .description("Gemini generation calls made while answering one query")
+            .tag("site", site)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Calls and prompt / candidate / cached tokens per call site for one query
+     */
+    private static final class LlmCallTally {
+        private static final int FIELDS = 4;
+
+        private final AtomicLongArray values = new AtomicLongArray(LlmCallSite.values().length * FIELDS);
+
+        void increment(LlmCallSite site) {
+            values.incrementAndGet(site.ordinal() * FIELDS);
+        }
+
+        void addTokens(LlmCallSite site, int prompt, int candidates, int cached) {
+            int base = site.ordinal() * FIELDS;
+            values.addAndGet(base + 1, prompt);
+            values.addAndGet(base + 2, candidates);
+            values.addAndGet(base + 3, cached);
+        }
+
+        long calls(LlmCallSite site) {
+            return values.get(site.ordinal() * FIELDS);
+        }
+
+        long promptTokens(LlmCallSite site) {
+            return values.get(site.ordinal() * FIELDS + 1);
+        }
+
+        long candidateTokens(LlmCallSite site) {
+            return values.get(site.ordinal() * FIELDS + 2);
+        }
+
+        long cachedTokens(LlmCallSite site) {
+            return values.get(site.ordinal() * FIELDS + 3);
+        }
+
+        long totalPromptTokens() {
+            return sum(1);
+        }
+
+        long totalCandidateTokens() {
+            return sum(2);
+        }
+
+        long totalCachedTokens() {
+            return sum(3);
+        }
+
+        private long sum(int field) {
+            long total = 0;
+            for (int i = field; i < values.length(); i += FIELDS) {
+                total += values.get(i);
+            }
+            return total;
+        }
+    }
+}
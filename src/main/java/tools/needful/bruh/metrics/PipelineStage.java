@@ -0,0 +1,18 @@
+package tools.needful.bruh.metrics;
+
+/**
+ * Stages of answering a query, the "stage" tag of bruh.stage
+ */
+public enum PipelineStage {
+    ANSWER_CACHE,
+    ROUTING,
+    RETRIEVAL,
+    SKILL,
+    VECTOR_SEARCH,
+    SYNTHESIS,
+    SLACK_POST;
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
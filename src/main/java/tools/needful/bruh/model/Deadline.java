@@ -0,0 +1,110 @@
+package tools.needful.bruh.model;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * Point in time by which a query must be answered.
+ *
+ * Created once per query by AgentCore and handed down explicitly (SkillContext,
+ * ExpertConsultationService). Code that is reached through Spring AI or RestTemplate
+ * cannot take a parameter, so the deadline is also bound to the current thread:
+ * GeminiApiClient / GeminiEmbeddingClient refuse to start a call once it has passed,
+ * and HttpTransport caps each read timeout at the time remaining.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * This deadline moved earlier by the given reserve (e.g. time kept back for synthesis)
+     */
+    public Deadline minus(Duration reserve) {
+        return new Deadline(expiresAtNanos - reserve.toNanos());
+    }
+
+    /**
+     * Time left, never negative
+     */
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * True if at least the given amount of time is left
+     */
+    public boolean allows(Duration work) {
+        return expiresAtNanos - System.nanoTime() >= work.toNanos();
+    }
+
+    /**
+     * The shorter of the given timeout and the time remaining
+     */
+    public Duration cap(Duration timeout) {
+        Duration remaining = remaining();
+        return remaining.compareTo(timeout) < 0 ? remaining : timeout;
+    }
+
+    /**
+     * Deadline bound to the current thread, or null if there is none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the work with this deadline bound to the current thread
+     */
+    public <T> T call(Supplier<T> work) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Wraps a task so that it runs with this deadline bound to whichever thread executes it
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return () -> {
+            Deadline previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline[" + remaining().toMillis() + " ms left]";
+    }
+}
@@ -1,7 +1,58 @@
 package tools.needful.bruh.skills;
 
+import tools.needful.bruh.model.Deadline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 public interface Skill {
     String getName();
     String getDescription();
     SkillResult execute(SkillContext context);
+
+    /**
+     * Phrases that select this skill without asking the LLM (case-insensitive,
+     * whole words). Only declare phrases that unambiguously mean this skill.
+     */
+    default List<String> getTriggers() {
+        return List.of();
+    }
+
+    /**
+     * How long the agent waits for this skill before answering without it.
+     * Null means the default (agent.retrieval.skill-timeout-ms).
+     */
+    default Duration getLatencyBudget() {
+        return null;
+    }
+
+    /**
+     * Whether answers built from this skill's output may be served again from the
+     * answer cache. Skills whose result changes from one minute to the next say no.
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * Runs the skill on the given executor. The default wraps execute() with the
+     * context's deadline bound to the worker thread; skills with natively asynchronous
+     * work can override it. Either way the skill should give up once
+     * context.isCancelled() turns true.
+     */
+    default CompletableFuture<SkillResult> executeAsync(SkillContext context, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            context.bindWorker(Thread.currentThread());
+            try {
+                Deadline deadline = context.getDeadline();
+                return deadline != null ? deadline.call(() -> execute(context)) : execute(context);
+            } finally {
+                context.unbindWorker();
+                // Do not leak a cancellation interrupt into the pooled thread's next task
+                Thread.interrupted();
+            }
+        }, executor);
+    }
 }
@@ -1,14 +1,59 @@
 package tools.needful.bruh.skills;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import tools.needful.bruh.model.Deadline;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class SkillContext {
     private String query;
     private String userId;
     private String channelId;
     private String messageTs;      // Timestamp of the message
     private String threadTs;       // Thread timestamp (if message is in a thread)
+
+    // When the skill's result is no longer useful; null means no limit.
+    // Skills should scale their work down as it approaches (see Deadline.allows).
+    private Deadline deadline;
+
+    // Set when the caller stops waiting; long-running skills should check isCancelled()
+    @Setter(AccessLevel.NONE)
+    private volatile boolean cancelled;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile Thread worker;
+
+    /**
+     * Binds the thread running the skill so cancel() can interrupt blocking I/O
+     */
+    void bindWorker(Thread thread) {
+        this.worker = thread;
+        if (cancelled) {
+            thread.interrupt();
+        }
+    }
+
+    void unbindWorker() {
+        this.worker = null;
+    }
+
+    /**
+     * Asks the skill to stop: sets the cancelled flag and interrupts its thread
+     */
+    public void cancel() {
+        cancelled = true;
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package tools.needful.bruh.skills;
+
+import io.micrometer.observation.Observation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.metrics.PipelineStage;
+import tools.needful.bruh.model.Deadline;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts skills asynchronously on virtual threads and enforces their latency budgets.
+ *
+ * Every execution gets its own copy of the SkillContext. The budget is the skill's
+ * own (or the default), shortened to what is left of the query deadline, and becomes
+ * the context's deadline so the skill can see how much time it has. When the budget
+ * runs out (or the caller cancels) the future completes exceptionally and the context
+ * is cancelled, which interrupts the skill's thread and lets it stop cooperatively.
+ *
+ * Each execution is a "skill" stage observation (timer + span) from start until the
+ * future completes; the skill itself runs inside that span.
+ */
+@Slf4j
+@Component
+public class SkillExecutor {
+
+    @Autowired
+    @Qualifier("skillTaskExecutor")
+    private ExecutorService executor;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${agent.retrieval.skill-timeout-ms:10000}")
+    private long defaultBudgetMs;
+
+    public SkillExecution start(Skill skill, SkillContext context) {
+        Duration budget = skill.getLatencyBudget() != null
+            ? skill.getLatencyBudget() : Duration.ofMillis(defaultBudgetMs);
+        if (context.getDeadline() != null) {
+            budget = context.getDeadline().cap(budget);
+        }
+        SkillContext own = context.toBuilder()
+            .deadline(Deadline.after(budget))
+            .build();
+
+        log.info("Executing skill: {} (budget {} ms)", skill.getName(), budget.toMillis());
+        Observation observation = pipelineMetrics.startStage(PipelineStage.SKILL, skill.getName());
+        CompletableFuture<SkillResult> future;
+        // The executor captures the open scope, so the skill runs as a child of this span
+        Observation.Scope scope = observation.openScope();
+        try {
+            future = skill.executeAsync(own, executor)
+                .orTimeout(budget.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((result, error) -> {
+                    if (error != null && isCancellation(error)) {
+                        own.cancel();
+                    }
+                    if (error != null) {
+                        observation.error(error);
+                    } else if (!result.isSuccess()) {
+                        observation.highCardinalityKeyValue("skill.error", String.valueOf(result.getError()));
+                    }
+                    observation.stop();
+                });
+        } finally {
+            scope.close();
+        }
+
+        return new SkillExecution(skill.getName(), budget, future, own);
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof TimeoutException || cause instanceof CancellationException;
+    }
+
+    /**
+     * A running skill. The future always completes by the end of the budget.
+     */
+    public record SkillExecution(String skillName, Duration budget, CompletableFuture<SkillResult> future,
+                                 SkillContext context) {
+
+        public void cancel() {
+            context.cancel();
+            future.cancel(true);
+        }
+    }
+}
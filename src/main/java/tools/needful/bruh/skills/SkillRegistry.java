@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -13,19 +14,41 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SkillRegistry {
 
     private final Map<String, Skill> skills = new ConcurrentHashMap<>();
+    private final TriggerMatcher triggerMatcher;
 
     @Autowired
     public SkillRegistry(List<Skill> skillBeans) {
+        Map<String, List<String>> triggers = new LinkedHashMap<>();
         skillBeans.forEach(skill -> {
             skills.put(skill.getName().toLowerCase(), skill);
+            triggers.put(skill.getName().toLowerCase(), skill.getTriggers());
             log.info("Registered skill: {}", skill.getName());
         });
+        this.triggerMatcher = new TriggerMatcher(triggers);
     }
 
     public Skill getSkill(String name) {
         return skills.get(name.toLowerCase());
     }
 
+    /**
+     * Skills whose declared trigger phrases occur in the query (empty if none)
+     */
+    public List<String> matchTriggers(String query) {
+        if (triggerMatcher.isEmpty()) {
+            return List.of();
+        }
+        return List.copyOf(triggerMatcher.match(query));
+    }
+
+    /**
+     * True if the query is nothing but trigger phrases ("what time is it?"), so the
+     * triggered skills alone answer it
+     */
+    public boolean isTriggerOnly(String query) {
+        return !triggerMatcher.isEmpty() && triggerMatcher.covers(query);
+    }
+
     public List<Skill> getAllSkills() {
         return List.copyOf(skills.values());
     }
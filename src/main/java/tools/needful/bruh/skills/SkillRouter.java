@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +19,8 @@ import java.util.stream.Collectors;
  * - Dynamic skill selection without hardcoded rules
  * - Multiple skills to be used for a single query
  * - Easy addition of new skills without modifying routing logic
+ *
+ * Queries that contain a skill's declared trigger phrase are routed without the LLM.
  */
 @Slf4j
 @Component
@@ -28,6 +32,9 @@ public class SkillRouter {
     @Autowired
     private SkillRegistry skillRegistry;
 
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
     /**
      * Routes a query to one or more appropriate skills.
      *
@@ -35,6 +42,12 @@ public class SkillRouter {
      * @return List of skill names to execute (may be empty if no skills are needed)
      */
     public List<String> routeToSkills(String query) {
+        List<String> triggered = skillRegistry.matchTriggers(query);
+        if (!triggered.isEmpty()) {
+            log.info("Query matched skill triggers: {}", triggered);
+            return triggered;
+        }
+
         String skillDescriptions = skillRegistry.getSkillDescriptions();
 
         String prompt = String.format("""
@@ -60,10 +73,10 @@ public class SkillRouter {
         );
 
         ChatClient chatClient = chatClientBuilder.build();
-        String response = chatClient.prompt()
-            .user(prompt)
-            .call()
-            .content()
+        String response = pipelineMetrics.llmCall(LlmCallSite.SKILL_ROUTING, () -> chatClient.prompt()
+                .user(prompt)
+                .call()
+                .content())
             .toLowerCase()
             .trim();
 
@@ -0,0 +1,153 @@
+package tools.needful.bruh.skills;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton over all skill trigger phrases.
+ *
+ * Built once from every registered skill; a query is scanned in a single pass no
+ * matter how many triggers exist. Text and phrases are normalized the same way
+ * (lowercase, punctuation folded to single spaces, padded with a space on both
+ * ends) so phrases only match on whole words: "time" does not match "sometimes".
+ */
+class TriggerMatcher {
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failure = new ArrayList<>();
+    private final List<Set<String>> outputs = new ArrayList<>();
+    // Length of the longest phrase ending at each node, 0 if none
+    private final List<Integer> longest = new ArrayList<>();
+
+    TriggerMatcher(Map<String, List<String>> triggersBySkill) {
+        newNode();
+        triggersBySkill.forEach((skill, triggers) -> {
+            for (String trigger : triggers) {
+                String phrase = normalize(trigger);
+                if (!phrase.isBlank()) {
+                    add(phrase, skill);
+                }
+            }
+        });
+        buildFailureLinks();
+    }
+
+    /**
+     * Names of the skills with at least one trigger in the text, in order of first match
+     */
+    Set<String> match(String text) {
+        Set<String> matched = new LinkedHashSet<>();
+        int state = 0;
+        for (char c : normalize(text).toCharArray()) {
+            state = next(state, c);
+            matched.addAll(outputs.get(state));
+        }
+        return matched;
+    }
+
+    /**
+     * True if the text is made of trigger phrases only, nothing else to answer
+     */
+    boolean covers(String text) {
+        String normalized = normalize(text);
+        if (normalized.isBlank()) {
+            return false;
+        }
+        // Matches arrive in order of their end; extend the covered prefix while they overlap it
+        int coveredTo = -1;
+        int state = 0;
+        for (int i = 0; i < normalized.length(); i++) {
+            state = next(state, normalized.charAt(i));
+            int length = longest.get(state);
+            if (length > 0 && i - length + 1 <= coveredTo + 1) {
+                coveredTo = i;
+            }
+        }
+        return coveredTo == normalized.length() - 1;
+    }
+
+    boolean isEmpty() {
+        return transitions.size() == 1;
+    }
+
+    private void add(String phrase, String skill) {
+        int state = 0;
+        for (char c : phrase.toCharArray()) {
+            Integer target = transitions.get(state).get(c);
+            if (target == null) {
+                target = newNode();
+                transitions.get(state).put(c, target);
+            }
+            state = target;
+        }
+        outputs.get(state).add(skill);
+        longest.set(state, phrase.length());
+    }
+
+    private void buildFailureLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            failure.set(child, 0);
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fallback = next(failure.get(state), edge.getKey());
+                failure.set(child, fallback);
+                // A match at the fallback state is also a match here
+                outputs.get(child).addAll(outputs.get(fallback));
+                longest.set(child, Math.max(longest.get(child), longest.get(fallback)));
+                queue.add(child);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            Integer target = transitions.get(state).get(c);
+            if (target != null) {
+                return target;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure.get(state);
+        }
+    }
+
+    private int newNode() {
+        transitions.add(new HashMap<>());
+        failure.add(0);
+        outputs.add(new LinkedHashSet<>());
+        longest.add(0);
+        return transitions.size() - 1;
+    }
+
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length() + 2).append(' ');
+        for (char c : text.toLowerCase().toCharArray()) {
+            if (c == '\'' || c == '’') {
+                // "what's" and "whats" are the same trigger
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+            } else if (normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(' ');
+            }
+        }
+        if (normalized.charAt(normalized.length() - 1) != ' ') {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+}
@@ -5,6 +5,8 @@ import tools.needful.bruh.skills.SkillContext;
 import tools.needful.bruh.skills.SkillResult;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 public class EchoSkill implements Skill {
 
@@ -18,6 +20,11 @@ public class EchoSkill implements Skill {
         return "Echoes back the input query";
     }
 
+    @Override
+    public List<String> getTriggers() {
+        return List.of("echo back", "repeat after me");
+    }
+
     @Override
     public SkillResult execute(SkillContext context) {
         return SkillResult.success("Echo: " + context.getQuery());
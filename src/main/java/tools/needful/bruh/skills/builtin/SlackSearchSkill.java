@@ -1,5 +1,7 @@
 package tools.needful.bruh.skills.builtin;
 
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
 import tools.needful.bruh.skills.Skill;
 import tools.needful.bruh.skills.SkillContext;
 import tools.needful.bruh.skills.SkillResult;
@@ -17,6 +19,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -63,6 +66,11 @@ public class SlackSearchSkill implements Skill {
 
     private static final int MAX_SLACK_SEARCH_RESULTS_COUNT = 100;
     private static final int MAX_ITERATIONS = 3;
+    private static final Duration LATENCY_BUDGET = Duration.ofSeconds(20);
+
+    // Rough cost of one workspace iteration (query generation + search + sufficiency check)
+    private static final Duration ITERATION_COST = Duration.ofSeconds(6);
+    private static final Duration SUFFICIENCY_CHECK_COST = Duration.ofSeconds(2);
 
     @Autowired
     private App slackApp;
@@ -70,6 +78,9 @@ public class SlackSearchSkill implements Skill {
     @Autowired
     private ChatClient.Builder chatClientBuilder;
 
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
     @Value("${slack.bot.token}")
     private String botToken;
 
@@ -92,6 +103,16 @@ public class SlackSearchSkill implements Skill {
                "Searches across workspace, channels, and threads with iterative refinement to find the most relevant messages.";
     }
 
+    /**
+     * Up to three search levels with LLM calls in between; longer than the default budget.
+     * When the context deadline gets close, sufficiency checks are skipped and the
+     * workspace search stops iterating, returning the best data found so far.
+     */
+    @Override
+    public Duration getLatencyBudget() {
+        return LATENCY_BUDGET;
+    }
+
     @Override
     public SkillResult execute(SkillContext context) {
         try {
@@ -105,7 +126,7 @@ public class SlackSearchSkill implements Skill {
             // Check if user explicitly requests workspace search
             if (isExplicitWorkspaceRequest(query)) {
                 log.info("Explicit workspace search requested, skipping progressive search");
-                return searchWorkspaceMessages(query);
+                return searchWorkspaceMessages(query, context);
             }
 
             // Progressive search with fallback: THREAD → CHANNEL → WORKSPACE
@@ -116,6 +137,12 @@ public class SlackSearchSkill implements Skill {
                 log.info("Fetched thread context: {} characters", threadContext.length());
 
                 if (!threadContext.trim().isEmpty()) {
+                    if (!hasTime(context, SUFFICIENCY_CHECK_COST.plus(ITERATION_COST))) {
+                        log.info("Deadline near, returning thread context without escalating");
+                        return SkillResult.success(
+                            String.format("Thread context:\n\n%s", threadContext)
+                        );
+                    }
                     if (isDataSufficient(query, threadContext, "thread")) {
                         log.info("Thread context sufficient, returning");
                         return SkillResult.success(
@@ -128,9 +155,16 @@ public class SlackSearchSkill implements Skill {
             }
 
             // LEVEL 2: Try channel search
+            if (context.isCancelled()) {
+                return SkillResult.error("Slack search cancelled");
+            }
             SkillResult channelResult = searchChannelHistory(channelId, query);
             if (channelResult.isSuccess()) {
                 String channelData = channelResult.getResult();
+                if (!hasTime(context, SUFFICIENCY_CHECK_COST.plus(ITERATION_COST))) {
+                    log.info("Deadline near, returning channel results without escalating");
+                    return channelResult;
+                }
                 if (isDataSufficient(query, channelData, "channel")) {
                     log.info("Channel search sufficient, returning");
                     return channelResult;
@@ -140,8 +174,11 @@ public class SlackSearchSkill implements Skill {
             }
 
             // LEVEL 3: Final fallback - workspace search
+            if (context.isCancelled()) {
+                return SkillResult.error("Slack search cancelled");
+            }
             log.info("Performing workspace search (final level)");
-            return searchWorkspaceMessages(query);
+            return searchWorkspaceMessages(query, context);
 
         } catch (Exception e) {
             log.error("Error executing Slack search skill", e);
@@ -149,6 +186,13 @@ public class SlackSearchSkill implements Skill {
         }
     }
 
+    /**
+     * True if the context has no deadline or at least the given time left before it
+     */
+    private static boolean hasTime(SkillContext context, Duration work) {
+        return context.getDeadline() == null || context.getDeadline().allows(work);
+    }
+
     /**
      * Detects if the user explicitly requests workspace-wide search
      */
@@ -186,10 +230,10 @@ public class SlackSearchSkill implements Skill {
                 data.length() > 1500 ? data.substring(0, 1500) + "..." : data
             );
 
-            String response = chatClient.prompt()
-                .user(prompt)
-                .call()
-                .content()
+            String response = pipelineMetrics.llmCall(LlmCallSite.SLACK_SUFFICIENCY, () -> chatClient.prompt()
+                    .user(prompt)
+                    .call()
+                    .content())
                 .trim()
                 .toUpperCase();
 
@@ -238,7 +282,8 @@ public class SlackSearchSkill implements Skill {
     /**
      * Searches for messages across the entire workspace using iterative LLM-guided search
      */
-    private SkillResult searchWorkspaceMessages(String query) throws IOException, SlackApiException {
+    private SkillResult searchWorkspaceMessages(String query, SkillContext context)
+            throws IOException, SlackApiException {
         log.info("Starting smart workspace search for: {}", query);
 
         List<MatchedItem> allResults = new ArrayList<>();
@@ -246,6 +291,13 @@ public class SlackSearchSkill implements Skill {
         SufficiencyResult sufficiencyResult = null;
 
         for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if (context.isCancelled()) {
+                return SkillResult.error("Slack search cancelled after " + iteration + " iteration(s)");
+            }
+            if (iteration > 0 && !hasTime(context, ITERATION_COST)) {
+                log.info("Deadline near, stopping after {} iteration(s)", iteration);
+                break;
+            }
             log.info("Search iteration {}/{}", iteration + 1, MAX_ITERATIONS);
 
             // Generate optimized Slack search query using LLM
@@ -266,6 +318,12 @@ public class SlackSearchSkill implements Skill {
             }
 
             // Check if we have sufficient results and extract relevant context
+            if (!allResults.isEmpty() && !hasTime(context, SUFFICIENCY_CHECK_COST)) {
+                // No time to judge (and compress) the results, hand back the raw matches
+                log.info("Deadline near, skipping sufficiency check");
+                sufficiencyResult = null;
+                break;
+            }
             if (!allResults.isEmpty()) {
                 sufficiencyResult = areSearchResultsSufficient(query, allResults, iteration + 1);
                 if (sufficiencyResult.isSufficient()) {
@@ -339,10 +397,10 @@ public class SlackSearchSkill implements Skill {
             promptBuilder.append("- You can use operators like 'from:@user' or 'in:#channel' if relevant\n\n");
             promptBuilder.append("Respond with ONLY the search query, nothing else.\n");
 
-            String response = chatClient.prompt()
-                .user(promptBuilder.toString())
-                .call()
-                .content()
+            String response = pipelineMetrics.llmCall(LlmCallSite.SLACK_QUERY_REWRITE, () -> chatClient.prompt()
+                    .user(promptBuilder.toString())
+                    .call()
+                    .content())
                 .trim();
 
             // Clean up the response (remove quotes if LLM added them)
@@ -564,10 +622,10 @@ public class SlackSearchSkill implements Skill {
                 resultsText.toString()
             );
 
-            String response = chatClient.prompt()
-                .user(prompt)
-                .call()
-                .content()
+            String response = pipelineMetrics.llmCall(LlmCallSite.SLACK_SUFFICIENCY, () -> chatClient.prompt()
+                    .user(prompt)
+                    .call()
+                    .content())
                 .trim();
 
             // Parse response
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Component;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 @Component
 public class TimeSkill implements Skill {
@@ -21,6 +22,17 @@ public class TimeSkill implements Skill {
         return "Returns current date and time";
     }
 
+    @Override
+    public List<String> getTriggers() {
+        return List.of("what time is it", "what's the time", "what is the time", "current time",
+            "what's the date", "what is the date", "today's date", "what day is it");
+    }
+
+    @Override
+    public boolean isCacheable() {
+        return false;
+    }
+
     @Override
     public SkillResult execute(SkillContext context) {
         String currentTime = ZonedDateTime.now()
@@ -0,0 +1,307 @@
+package tools.needful.bruh.slack;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control and fair scheduling for Slack queries.
+ *
+ * At most max-in-flight queries are handled at once, each on its own virtual thread
+ * (queryExecutor). Up to max-queued more wait for a slot; beyond that a query is refused
+ * and the caller sheds it (SlackEventListener replies "busy"), so a burst cannot pile up
+ * work that would miss its deadline anyway.
+ *
+ * Which waiting query gets a freed slot:
+ *   1. thread follow-ups before new top-level questions, so conversations stay snappy
+ *   2. within each, weighted round-robin across channels: a channel gets up to its
+ *      weight (channel-weights, default 1) queries in a row, then the next channel's turn
+ *
+ * Quotas are token buckets per user and per channel, checked on arrival: one request
+ * rate bucket (requests-per-minute, burst request-burst) and one for the Gemini tokens
+ * their queries consumed (tokens-per-minute, burst token-burst). Tokens are charged after
+ * a query finishes; a user or channel in token debt is refused until it has refilled.
+ *
+ * Metrics: bruh.query.in.flight and bruh.query.queue.depth (gauges),
+ * bruh.query.queue.wait{priority} (time from arrival to start) and
+ * bruh.query.rejected{reason}.
+ */
+@Slf4j
+@Component
+public class QueryAdmission {
+
+    public enum Outcome {
+        ACCEPTED,
+        QUEUE_FULL,
+        OVER_QUOTA
+    }
+
+    /**
+     * Who asked where; followUp is true for a mention inside a thread
+     */
+    public record Ticket(String channelId, String userId, boolean followUp) {
+    }
+
+    @Autowired
+    @Qualifier("queryExecutor")
+    private ExecutorService queryExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${slack.queries.max-in-flight:16}")
+    private int maxInFlight;
+
+    @Value("${slack.queries.max-queued:64}")
+    private int maxQueued;
+
+    @Value("${slack.queries.channel-weights:}")
+    private String channelWeightsSpec;
+
+    @Value("${slack.queries.quotas.user.requests-per-minute:6}")
+    private long userRequestsPerMinute;
+
+    @Value("${slack.queries.quotas.user.request-burst:4}")
+    private long userRequestBurst;
+
+    @Value("${slack.queries.quotas.user.tokens-per-minute:60000}")
+    private long userTokensPerMinute;
+
+    @Value("${slack.queries.quotas.user.token-burst:120000}")
+    private long userTokenBurst;
+
+    @Value("${slack.queries.quotas.channel.requests-per-minute:20}")
+    private long channelRequestsPerMinute;
+
+    @Value("${slack.queries.quotas.channel.request-burst:10}")
+    private long channelRequestBurst;
+
+    @Value("${slack.queries.quotas.channel.tokens-per-minute:200000}")
+    private long channelTokensPerMinute;
+
+    @Value("${slack.queries.quotas.channel.token-burst:400000}")
+    private long channelTokenBurst;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final RoundRobin followUps = new RoundRobin();
+    private final RoundRobin newQuestions = new RoundRobin();
+    private final Map<String, Integer> channelWeights = new HashMap<>();
+    private final Map<String, Quota> userQuotas = new HashMap<>();
+    private final Map<String, Quota> channelQuotas = new HashMap<>();
+    private int inFlight;
+
+    private Timer followUpWait;
+    private Timer newQuestionWait;
+
+    @PostConstruct
+    public void init() {
+        for (String entry : channelWeightsSpec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length == 2) {
+                channelWeights.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+            }
+        }
+
+        Gauge.builder("bruh.query.in.flight", this, QueryAdmission::inFlight)
+            .description("Slack queries being handled")
+            .register(meterRegistry);
+        Gauge.builder("bruh.query.queue.depth", this, QueryAdmission::queued)
+            .description("Slack queries waiting for a free slot")
+            .register(meterRegistry);
+        followUpWait = queueWait("thread");
+        newQuestionWait = queueWait("new");
+    }
+
+    /**
+     * Runs the query now if a slot is free, else queues it. The query returns the
+     * Gemini tokens it consumed, which are charged to the asker's and channel's quotas.
+     * Anything but ACCEPTED means the query was not run and never will be.
+     */
+    public Outcome submit(Ticket ticket, LongSupplier query) {
+        Pending pending = new Pending(ticket, query, System.nanoTime());
+        lock.lock();
+        try {
+            Quota user = userQuotas.computeIfAbsent(key(ticket.userId()), k -> newUserQuota());
+            Quota channel = channelQuotas.computeIfAbsent(key(ticket.channelId()), k -> newChannelQuota());
+            if (!user.admits() || !channel.admits()) {
+                log.warn("Query from {} in {} is over quota, shedding it", ticket.userId(), ticket.channelId());
+                return rejected(Outcome.OVER_QUOTA);
+            }
+            if (inFlight >= maxInFlight && queued() >= maxQueued) {
+                log.warn("Query queue full ({} in flight, {} queued), shedding query", inFlight, queued());
+                return rejected(Outcome.QUEUE_FULL);
+            }
+            user.requests.take(1);
+            channel.requests.take(1);
+
+            if (inFlight < maxInFlight) {
+                inFlight++;
+            } else {
+                (ticket.followUp() ? followUps : newQuestions).add(key(ticket.channelId()), pending);
+                return Outcome.ACCEPTED;
+            }
+        } finally {
+            lock.unlock();
+        }
+        start(pending);
+        return Outcome.ACCEPTED;
+    }
+
+    private void start(Pending pending) {
+        queryExecutor.execute(() -> {
+            (pending.ticket().followUp() ? followUpWait : newQuestionWait)
+                .record(System.nanoTime() - pending.arrivedAtNanos(), TimeUnit.NANOSECONDS);
+            long tokens = 0;
+            try {
+                tokens = pending.query().getAsLong();
+            } catch (RuntimeException e) {
+                log.error("Query handling failed", e);
+            } finally {
+                finished(pending.ticket(), tokens);
+            }
+        });
+    }
+
+    /**
+     * Charges the tokens, then hands the slot to the next waiting query or frees it
+     */
+    private void finished(Ticket ticket, long tokens) {
+        Pending next;
+        lock.lock();
+        try {
+            userQuotas.computeIfAbsent(key(ticket.userId()), k -> newUserQuota()).tokens.take(tokens);
+            channelQuotas.computeIfAbsent(key(ticket.channelId()), k -> newChannelQuota()).tokens.take(tokens);
+            // Full buckets carry no state, so idle users and channels are dropped
+            userQuotas.values().removeIf(Quota::isIdle);
+            channelQuotas.values().removeIf(Quota::isIdle);
+
+            next = followUps.poll();
+            if (next == null) {
+                next = newQuestions.poll();
+            }
+            if (next == null) {
+                inFlight--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next != null) {
+            start(next);
+        }
+    }
+
+    private Outcome rejected(Outcome reason) {
+        meterRegistry.counter("bruh.query.rejected", "reason", reason.name().toLowerCase()).increment();
+        return reason;
+    }
+
+    private Quota newUserQuota() {
+        return new Quota(new TokenBucket(userRequestBurst, userRequestsPerMinute),
+            new TokenBucket(userTokenBurst, userTokensPerMinute));
+    }
+
+    private Quota newChannelQuota() {
+        return new Quota(new TokenBucket(channelRequestBurst, channelRequestsPerMinute),
+            new TokenBucket(channelTokenBurst, channelTokensPerMinute));
+    }
+
+    private Timer queueWait(String priority) {
+        return Timer.builder("bruh.query.queue.wait")
+            .description("Time a Slack query waited before handling started")
+            .tag("priority", priority)
+            .register(meterRegistry);
+    }
+
+    private static String key(String id) {
+        return id != null ? id : "";
+    }
+
+    private int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int queued() {
+        lock.lock();
+        try {
+            return followUps.size + newQuestions.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Pending(Ticket ticket, LongSupplier query, long arrivedAtNanos) {
+    }
+
+    /**
+     * Request rate and Gemini token buckets of one user or channel
+     */
+    private record Quota(TokenBucket requests, TokenBucket tokens) {
+
+        boolean admits() {
+            return requests.hasTokens(1) && tokens.hasTokens(0);
+        }
+
+        boolean isIdle() {
+            return requests.isFull() && tokens.isFull();
+        }
+    }
+
+    /**
+     * Per-channel FIFO queues served in weighted round-robin. The channel at the head
+     * has the turn; it moves to the back once served its weight in a row or emptied.
+     */
+    private class RoundRobin {
+        private final LinkedHashMap<String, ArrayDeque<Pending>> queues = new LinkedHashMap<>();
+        private int servedInTurn;
+        private int size;
+
+        void add(String channel, Pending pending) {
+            queues.computeIfAbsent(channel, k -> new ArrayDeque<>()).addLast(pending);
+            size++;
+        }
+
+        Pending poll() {
+            Iterator<Map.Entry<String, ArrayDeque<Pending>>> head = queues.entrySet().iterator();
+            if (!head.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, ArrayDeque<Pending>> turn = head.next();
+            String channel = turn.getKey();
+            ArrayDeque<Pending> queue = turn.getValue();
+            Pending pending = queue.pollFirst();
+            size--;
+            servedInTurn++;
+
+            if (queue.isEmpty()) {
+                head.remove();
+                servedInTurn = 0;
+            } else if (servedInTurn >= channelWeights.getOrDefault(channel, 1)) {
+                head.remove();
+                queues.put(channel, queue);
+                servedInTurn = 0;
+            }
+            return pending;
+        }
+    }
+}
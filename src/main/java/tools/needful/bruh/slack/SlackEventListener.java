@@ -1,6 +1,8 @@
 package tools.needful.bruh.slack;
 
 import tools.needful.bruh.agent.AgentCore;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.metrics.PipelineStage;
 import tools.needful.bruh.model.AgentResponse;
 import com.slack.api.bolt.App;
 import com.slack.api.bolt.context.builtin.EventContext;
@@ -8,11 +10,13 @@ import com.slack.api.model.event.AppMentionEvent;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -21,12 +25,33 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class SlackEventListener {
 
+    private static final String BUSY_REPLY =
+        "I'm swamped with questions right now, please ask again in a minute.";
+    private static final String OVER_QUOTA_REPLY =
+        "That's more questions than I can take from you or this channel right now, please ask again in a few minutes.";
+
     @Autowired
     private App slackApp;
 
     @Autowired
     private AgentCore agentCore;
 
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private QueryAdmission queryAdmission;
+
+    @Autowired
+    @Qualifier("queryExecutor")
+    private ExecutorService queryExecutor;
+
+    @Value("${slack.streaming.enabled:true}")
+    private boolean streamingEnabled;
+
+    @Value("${slack.streaming.update-interval-ms:1000}")
+    private long streamingUpdateIntervalMs;
+
     // Track processed events to prevent duplicates (event_id -> expiry_time)
     private final Set<String> processedEvents = ConcurrentHashMap.newKeySet();
     private final ScheduledExecutorService cleanupScheduler = Executors.newSingleThreadScheduledExecutor();
@@ -52,8 +77,16 @@ public class SlackEventListener {
             // Acknowledge immediately (within 3 seconds)
             ctx.ack();
 
-            // Process asynchronously in a separate thread
-            CompletableFuture.runAsync(() -> handleAppMention(event.getEvent(), ctx));
+            // Process asynchronously on a query thread, or shed the query if it cannot be admitted
+            AppMentionEvent mention = event.getEvent();
+            QueryAdmission.Ticket ticket = new QueryAdmission.Ticket(mention.getChannel(), mention.getUser(),
+                mention.getThreadTs() != null);
+            QueryAdmission.Outcome outcome = queryAdmission.submit(ticket, () -> handleAppMention(mention, ctx));
+            if (outcome == QueryAdmission.Outcome.QUEUE_FULL) {
+                queryExecutor.execute(() -> replyShed(mention, ctx, BUSY_REPLY));
+            } else if (outcome == QueryAdmission.Outcome.OVER_QUOTA) {
+                queryExecutor.execute(() -> replyShed(mention, ctx, OVER_QUOTA_REPLY));
+            }
 
             return ctx.ack();
         });
@@ -61,7 +94,31 @@ public class SlackEventListener {
         log.info("Slack event listeners registered");
     }
 
-    private void handleAppMention(AppMentionEvent event, EventContext ctx) {
+    private void replyShed(AppMentionEvent event, EventContext ctx, String text) {
+        try {
+            ctx.client().chatPostMessage(req -> req
+                .channel(event.getChannel())
+                .threadTs(event.getThreadTs() != null ? event.getThreadTs() : event.getTs())
+                .text(text)
+            );
+        } catch (Exception e) {
+            log.error("Error sending shed reply", e);
+        }
+    }
+
+    /**
+     * Returns the Gemini tokens used, charged to the asker's and the channel's quota
+     */
+    private long handleAppMention(AppMentionEvent event, EventContext ctx) {
+        // One bruh.query observation per mention, from admission until the reply is posted
+        if (streamingEnabled) {
+            return pipelineMetrics.query("streaming", () -> handleAppMentionStreaming(event, ctx));
+        } else {
+            return pipelineMetrics.query("blocking", () -> handleAppMentionBlocking(event, ctx));
+        }
+    }
+
+    private void handleAppMentionBlocking(AppMentionEvent event, EventContext ctx) {
         try {
             String text = event.getText();
             String userId = event.getUser();
@@ -78,11 +135,11 @@ public class SlackEventListener {
             AgentResponse response = agentCore.handleQuery(query, userId, channelId, messageTs, threadTs);
 
             // Send response in thread
-            ctx.client().chatPostMessage(req -> req
+            pipelineMetrics.stageChecked(PipelineStage.SLACK_POST, "reply", () -> ctx.client().chatPostMessage(req -> req
                 .channel(channelId)
                 .threadTs(threadTs != null ? threadTs : messageTs)
                 .text(response.getAnswer())
-            );
+            ));
 
         } catch (Exception e) {
             log.error("Error handling app mention", e);
@@ -98,4 +155,33 @@ public class SlackEventListener {
             }
         }
     }
+
+    /**
+     * Posts a placeholder right away and edits it as the answer streams in
+     */
+    private void handleAppMentionStreaming(AppMentionEvent event, EventContext ctx) {
+        String channelId = event.getChannel();
+        String messageTs = event.getTs();
+        String threadTs = event.getThreadTs(); // null if not in a thread
+
+        StreamingReply reply = new StreamingReply(ctx.client(), channelId,
+            threadTs != null ? threadTs : messageTs, streamingUpdateIntervalMs);
+        pipelineMetrics.stage(PipelineStage.SLACK_POST, "placeholder", reply::start);
+
+        try {
+            log.info("Received mention in channel {}: {}", channelId, event.getText());
+
+            // Remove bot mention from text
+            String query = event.getText().replaceAll("<@[A-Z0-9]+>", "").trim();
+
+            AgentResponse response = agentCore.handleQueryStreaming(query, event.getUser(), channelId,
+                messageTs, threadTs, reply::update);
+
+            pipelineMetrics.stage(PipelineStage.SLACK_POST, "final", () -> reply.finish(response.getAnswer()));
+
+        } catch (Exception e) {
+            log.error("Error handling app mention", e);
+            reply.finish("Sorry, I encountered an error processing your request.");
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package tools.needful.bruh.slack;
+
+import com.slack.api.methods.MethodsClient;
+import com.slack.api.methods.response.chat.ChatPostMessageResponse;
+import com.slack.api.methods.response.chat.ChatUpdateResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A thread reply that is posted as a placeholder and then edited in place while
+ * the answer streams in.
+ *
+ * chat.update is rate limited per workspace, so partial text is only pushed once
+ * per update interval (the latest text wins, intermediate deltas are coalesced).
+ * The interval doubles whenever Slack pushes back. The final text is always sent.
+ */
+@Slf4j
+class StreamingReply {
+
+    private static final String PLACEHOLDER = ":hourglass_flowing_sand: Thinking...";
+    private static final String TYPING_SUFFIX = " ▍";
+    private static final long MAX_INTERVAL_MS = 10_000;
+
+    private final MethodsClient client;
+    private final String channelId;
+    private final String threadTs;
+
+    private long intervalMs;
+    private long nextUpdateAt;
+    private String ts;
+    private String lastSent;
+
+    StreamingReply(MethodsClient client, String channelId, String threadTs, long intervalMs) {
+        this.client = client;
+        this.channelId = channelId;
+        this.threadTs = threadTs;
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Posts the placeholder message; if that fails the answer is posted normally at the end
+     */
+    void start() {
+        try {
+            ChatPostMessageResponse response = client.chatPostMessage(req -> req
+                .channel(channelId)
+                .threadTs(threadTs)
+                .text(PLACEHOLDER)
+            );
+            if (response.isOk()) {
+                ts = response.getTs();
+                nextUpdateAt = System.currentTimeMillis() + intervalMs;
+            } else {
+                log.warn("Failed to post placeholder message: {}", response.getError());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to post placeholder message", e);
+        }
+    }
+
+    /**
+     * Offers the answer so far; pushed to Slack only if the update interval has elapsed
+     */
+    synchronized void update(String partialText) {
+        if (ts == null || System.currentTimeMillis() < nextUpdateAt) {
+            return;
+        }
+        send(partialText + TYPING_SUFFIX);
+    }
+
+    /**
+     * Replaces the placeholder with the final text (or posts it if there is no placeholder)
+     */
+    synchronized void finish(String text) {
+        if (ts == null) {
+            try {
+                client.chatPostMessage(req -> req
+                    .channel(channelId)
+                    .threadTs(threadTs)
+                    .text(text)
+                );
+            } catch (Exception e) {
+                log.error("Error sending reply", e);
+            }
+            return;
+        }
+
+        if (!send(text)) {
+            // One more try after backing off; the final answer must not get lost
+            sleepQuietly(intervalMs);
+            send(text);
+        }
+    }
+
+    private boolean send(String text) {
+        if (text.equals(lastSent)) {
+            return true;
+        }
+
+        boolean ok;
+        try {
+            ChatUpdateResponse response = client.chatUpdate(req -> req
+                .channel(channelId)
+                .ts(ts)
+                .text(text)
+            );
+            ok = response.isOk();
+            if (!ok) {
+                log.debug("chat.update rejected: {}", response.getError());
+            }
+        } catch (Exception e) {
+            log.debug("chat.update failed: {}", e.getMessage());
+            ok = false;
+        }
+
+        if (ok) {
+            lastSent = text;
+        } else {
+            intervalMs = Math.min(intervalMs * 2, MAX_INTERVAL_MS);
+        }
+        nextUpdateAt = System.currentTimeMillis() + intervalMs;
+        return ok;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package tools.needful.bruh.slack;
+
+/**
+ * Holds up to capacity tokens, refilled continuously at perMinute.
+ *
+ * Costs known up front are checked with hasTokens before take; costs only known
+ * afterwards (Gemini tokens) are taken regardless and may leave the bucket in debt,
+ * which blocks further work until it has refilled. Not thread-safe.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long refilledAtNanos;
+
+    TokenBucket(long capacity, long perMinute) {
+        this.capacity = capacity;
+        this.perNano = perMinute / 60e9;
+        this.tokens = capacity;
+        this.refilledAtNanos = System.nanoTime();
+    }
+
+    boolean hasTokens(double amount) {
+        refill();
+        return tokens >= amount;
+    }
+
+    void take(double amount) {
+        refill();
+        tokens -= amount;
+    }
+
+    /**
+     * True if the bucket is back to full, i.e. indistinguishable from a new one
+     */
+    boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAtNanos) * perNano);
+        refilledAtNanos = now;
+    }
+}
@@ -0,0 +1,125 @@
+package tools.needful.bruh.vectorization;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chroma.vectorstore.ChromaApi;
+import org.springframework.ai.chroma.vectorstore.common.ChromaApiConstants;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes pre-embedded chunks straight to the Chroma collection.
+ *
+ * VectorStore.add() always embeds what it stores; the indexing pipeline embeds
+ * in its own stage, so storing goes through ChromaApi with the vectors it already has.
+ */
+@Slf4j
+@Component
+public class ChunkStore {
+
+    private static final int GET_BATCH_SIZE = 500;
+
+    @Autowired
+    private ChromaApi chromaApi;
+
+    @Value("${spring.ai.vectorstore.chroma.collection-name:bruh-experts}")
+    private String collectionName;
+
+    private volatile String collectionId;
+
+    /**
+     * ID of the backing Chroma collection, creating tenant, database and collection
+     * on first use. Null if Chroma cannot be reached.
+     */
+    public String getCollectionId() {
+        if (collectionId == null) {
+            try {
+                collectionId = ensureCollection().id();
+            } catch (Exception e) {
+                log.warn("Could not resolve Chroma collection id: {}", e.getMessage());
+            }
+        }
+        return collectionId;
+    }
+
+    private ChromaApi.Collection ensureCollection() {
+        if (chromaApi.getTenant(ChromaApiConstants.DEFAULT_TENANT_NAME) == null) {
+            chromaApi.createTenant(ChromaApiConstants.DEFAULT_TENANT_NAME);
+        }
+
+        if (chromaApi.getDatabase(ChromaApiConstants.DEFAULT_TENANT_NAME,
+                ChromaApiConstants.DEFAULT_DATABASE_NAME) == null) {
+            chromaApi.createDatabase(ChromaApiConstants.DEFAULT_TENANT_NAME, ChromaApiConstants.DEFAULT_DATABASE_NAME);
+        }
+
+        ChromaApi.Collection collection = chromaApi.getCollection(ChromaApiConstants.DEFAULT_TENANT_NAME,
+            ChromaApiConstants.DEFAULT_DATABASE_NAME, collectionName);
+        if (collection == null) {
+            collection = chromaApi.createCollection(ChromaApiConstants.DEFAULT_TENANT_NAME,
+                ChromaApiConstants.DEFAULT_DATABASE_NAME, new ChromaApi.CreateCollectionRequest(collectionName));
+        }
+        return collection;
+    }
+
+    public void upsert(List<Document> chunks, List<float[]> embeddings) {
+        if (chunks.size() != embeddings.size()) {
+            throw new IllegalArgumentException(
+                "Got " + embeddings.size() + " embeddings for " + chunks.size() + " chunks");
+        }
+
+        var request = new ChromaApi.AddEmbeddingsRequest(
+            chunks.stream().map(Document::getId).collect(Collectors.toList()),
+            embeddings,
+            chunks.stream().map(Document::getMetadata).collect(Collectors.toList()),
+            chunks.stream().map(Document::getText).collect(Collectors.toList()));
+
+        chromaApi.upsertEmbeddings(ChromaApiConstants.DEFAULT_TENANT_NAME,
+            ChromaApiConstants.DEFAULT_DATABASE_NAME, requireCollectionId(), request);
+    }
+
+    public void delete(List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        chromaApi.deleteEmbeddings(ChromaApiConstants.DEFAULT_TENANT_NAME,
+            ChromaApiConstants.DEFAULT_DATABASE_NAME, requireCollectionId(),
+            new ChromaApi.DeleteEmbeddingsRequest(ids));
+    }
+
+    /**
+     * Stored vectors by chunk ID; IDs missing from the collection are absent from the map
+     */
+    public Map<String, float[]> getEmbeddings(List<String> ids) {
+        Map<String, float[]> embeddings = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += GET_BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + GET_BATCH_SIZE, ids.size()));
+            var request = new ChromaApi.GetEmbeddingsRequest(batch, null, null, null,
+                List.of(ChromaApi.QueryRequest.Include.EMBEDDINGS));
+
+            ChromaApi.GetEmbeddingResponse response = chromaApi.getEmbeddings(ChromaApiConstants.DEFAULT_TENANT_NAME,
+                ChromaApiConstants.DEFAULT_DATABASE_NAME, requireCollectionId(), request);
+            if (response == null || response.embeddings() == null) {
+                continue;
+            }
+            for (int i = 0; i < response.ids().size(); i++) {
+                embeddings.put(response.ids().get(i), response.embeddings().get(i));
+            }
+        }
+        return embeddings;
+    }
+
+    private String requireCollectionId() {
+        String id = getCollectionId();
+        if (id == null) {
+            throw new IllegalStateException("Chroma collection not available: " + collectionName);
+        }
+        return id;
+    }
+}
@@ -4,9 +4,12 @@ import org.springframework.ai.document.Document;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 @Component
 public class DocumentChunker {
@@ -30,20 +33,36 @@ public class DocumentChunker {
     private List<Document> chunkDocument(Document doc) {
         List<Document> chunks = new ArrayList<>();
         String content = doc.getText();
+        String expert = (String) doc.getMetadata().getOrDefault("expert", "");
+        String path = (String) doc.getMetadata().getOrDefault("relative_path",
+            doc.getMetadata().getOrDefault("path", ""));
 
         // Simple paragraph-based chunking
         List<String> paragraphs = Arrays.asList(content.split("\n\n+"));
 
+        int ordinal = 0;
         for (String para : paragraphs) {
             if (para.trim().isEmpty()) {
                 continue;
             }
 
-            Document chunk = new Document(para.trim());
+            String text = para.trim();
+            Document chunk = new Document(chunkId(expert, path, ordinal, text), text, new HashMap<>());
             chunk.getMetadata().putAll(doc.getMetadata());
+            chunk.getMetadata().put("chunk_index", ordinal);
             chunks.add(chunk);
+            ordinal++;
         }
 
         return chunks;
     }
+
+    /**
+     * Stable chunk ID: the same chunk text at the same position of the same file
+     * always maps to the same ID, so re-ingestion upserts instead of duplicating.
+     */
+    static String chunkId(String expert, String path, int ordinal, String text) {
+        String key = expert + "|" + path + "|" + ordinal + "|" + ContentHash.sha256(text);
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
 }
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Slf4j
@@ -19,31 +20,48 @@ public class DocumentLoader {
     public List<Document> loadRecursively(File directory) {
         List<Document> documents = new ArrayList<>();
 
+        for (Path path : listDocumentFiles(directory)) {
+            try {
+                documents.add(load(path));
+            } catch (IOException e) {
+                log.error("Failed to read file: {}", path, e);
+            }
+        }
+
+        return documents;
+    }
+
+    /**
+     * Lists all indexable files (.md, .txt) below a directory
+     */
+    public List<Path> listDocumentFiles(File directory) {
         try (Stream<Path> paths = Files.walk(directory.toPath())) {
-            paths
+            return paths
                 .filter(Files::isRegularFile)
-                .filter(path -> {
-                    String fileName = path.toString().toLowerCase();
-                    return fileName.endsWith(".md") ||
-                           fileName.endsWith(".txt");
-                })
-                .forEach(path -> {
-                    try {
-                        String content = Files.readString(path);
-
-                        Document doc = new Document(content);
-                        doc.getMetadata().put("source", path.getFileName().toString());
-                        doc.getMetadata().put("path", path.toString());
-
-                        documents.add(doc);
-                    } catch (IOException e) {
-                        log.error("Failed to read file: {}", path, e);
-                    }
-                });
+                .filter(DocumentLoader::isDocumentFile)
+                .collect(Collectors.toList());
         } catch (IOException e) {
             log.error("Failed to walk directory: {}", directory, e);
+            return List.of();
         }
+    }
 
-        return documents;
+    /**
+     * Reads a single file into a Document with source/path metadata
+     */
+    public Document load(Path path) throws IOException {
+        String content = Files.readString(path);
+
+        Document doc = new Document(content);
+        doc.getMetadata().put("source", path.getFileName().toString());
+        doc.getMetadata().put("path", path.toString());
+
+        return doc;
+    }
+
+    public static boolean isDocumentFile(Path path) {
+        String fileName = path.toString().toLowerCase();
+        return fileName.endsWith(".md") ||
+               fileName.endsWith(".txt");
     }
 }
@@ -0,0 +1,234 @@
+package tools.needful.bruh.vectorization;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches agent.experts.base-path and re-indexes experts whose files change.
+ *
+ * Events are collapsed per expert and flushed once no new event has arrived for
+ * the debounce window, so saving a batch of files triggers one pipeline run.
+ * The pipeline's manifest diff then limits re-embedding to the files that changed.
+ */
+@Slf4j
+@Component
+public class ExpertDocsWatcher {
+
+    @Autowired
+    private IndexingPipeline indexingPipeline;
+
+    @Value("${agent.experts.base-path}")
+    private String expertsBasePath;
+
+    @Value("${agent.experts.watch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.experts.watch.debounce-ms:2000}")
+    private long debounceMs;
+
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Set<String> dirtyExperts = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "expert-docs-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WatchService watchService;
+    private Path basePath;
+    private ScheduledFuture<?> pendingFlush;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Expert docs watcher disabled");
+            return;
+        }
+
+        basePath = Paths.get(expertsBasePath).toAbsolutePath().normalize();
+        if (!Files.isDirectory(basePath)) {
+            log.warn("Experts directory not found, not watching: {}", expertsBasePath);
+            return;
+        }
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerRecursively(basePath);
+        } catch (IOException e) {
+            log.error("Failed to start expert docs watcher", e);
+            return;
+        }
+
+        Thread watcher = new Thread(this::watchLoop, "expert-docs-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        log.info("👀 Watching {} for documentation changes ({} directories)", basePath, watchedDirs.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Failed to close watch service", e);
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchedDirs.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    handleEvent(dir, event);
+                }
+            }
+
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+            }
+        }
+    }
+
+    private void handleEvent(Path dir, WatchEvent<?> event) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // Events were lost; re-check every expert, the manifest diff keeps this cheap
+            File[] folders = basePath.toFile().listFiles(File::isDirectory);
+            if (folders != null) {
+                for (File folder : folders) {
+                    dirtyExperts.add(folder.getName());
+                }
+            }
+            scheduleFlush();
+            return;
+        }
+
+        Path changed = dir.resolve((Path) event.context());
+
+        // New directories (including a brand new expert) need their own watch
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+            try {
+                registerRecursively(changed);
+            } catch (IOException e) {
+                log.warn("Failed to watch new directory: {}", changed, e);
+            }
+        }
+
+        // Only indexable files matter; expert.yml, editor swap files etc. are ignored
+        if (Files.isRegularFile(changed) && !DocumentLoader.isDocumentFile(changed)) {
+            return;
+        }
+
+        // Plain files directly in the base path do not belong to an expert
+        Path relative = basePath.relativize(changed);
+        if (relative.getNameCount() == 1 && Files.isRegularFile(changed)) {
+            return;
+        }
+
+        dirtyExperts.add(relative.getName(0).toString());
+        scheduleFlush();
+    }
+
+    /**
+     * (Re)starts the debounce timer
+     */
+    private synchronized void scheduleFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+        }
+        pendingFlush = scheduler.schedule(this::flush, debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        List<String> experts = new ArrayList<>(dirtyExperts);
+        dirtyExperts.removeAll(experts);
+        if (experts.isEmpty()) {
+            return;
+        }
+
+        log.info("🔄 Documentation changed, re-indexing experts: {}", experts);
+
+        List<File> present = new ArrayList<>();
+        for (String expertName : experts) {
+            File folder = new File(expertsBasePath, expertName);
+            if (folder.isDirectory()) {
+                present.add(folder);
+            } else {
+                try {
+                    indexingPipeline.remove(folder);
+                } catch (Exception e) {
+                    log.error("Failed to remove deleted expert: {}", expertName, e);
+                    retryLater(List.of(expertName));
+                }
+            }
+        }
+
+        if (!present.isEmpty()) {
+            try {
+                if (!indexingPipeline.index(present)) {
+                    retryLater(present.stream().map(File::getName).toList());
+                }
+            } catch (Exception e) {
+                log.error("Re-indexing failed for experts: {}", experts, e);
+            }
+        }
+    }
+
+    /**
+     * Marks experts dirty again so the next flush picks them up (vector store was unreachable)
+     */
+    private void retryLater(List<String> experts) {
+        log.warn("Will retry re-indexing experts: {}", experts);
+        dirtyExperts.addAll(experts);
+        scheduleFlush();
+    }
+
+    private void registerRecursively(Path root) throws IOException {
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                WatchKey key = dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, dir);
+            }
+        }
+    }
+}
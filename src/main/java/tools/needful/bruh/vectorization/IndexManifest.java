@@ -0,0 +1,129 @@
+package tools.needful.bruh.vectorization;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted record of what has been vectorized for one expert.
+ *
+ * Keyed by file path relative to the expert folder. Size and mtime allow
+ * unchanged files to be skipped without reading them; the content hash
+ * catches touched-but-identical files; chunk IDs let stale chunks be
+ * removed from the vector store when a file changes. The per-file embedding
+ * sum lets the expert's centroid be rebuilt without touching the vector store.
+ */
+@Data
+@NoArgsConstructor
+public class IndexManifest {
+
+    private String expert;
+
+    // Chroma collection the chunk IDs belong to; a different ID means the store was reset
+    private String collectionId;
+
+    private Instant updatedAt;
+
+    private Map<String, FileEntry> files = new LinkedHashMap<>();
+
+    public IndexManifest(String expert, String collectionId) {
+        this.expert = expert;
+        this.collectionId = collectionId;
+    }
+
+    @JsonIgnore
+    public int getChunkCount() {
+        return files.values().stream()
+            .mapToInt(entry -> entry.getChunkIds().size())
+            .sum();
+    }
+
+    /**
+     * Unit-length mean of all chunk embeddings, or null if no file has an embedding sum
+     */
+    public float[] computeCentroid() {
+        float[] centroid = null;
+        for (FileEntry entry : files.values()) {
+            float[] sum = decodeVector(entry.getEmbeddingSum());
+            if (sum == null) {
+                continue;
+            }
+            if (centroid == null) {
+                centroid = new float[sum.length];
+            }
+            if (sum.length != centroid.length) {
+                continue;
+            }
+            for (int i = 0; i < sum.length; i++) {
+                centroid[i] += sum[i];
+            }
+        }
+        return centroid != null ? normalize(centroid) : null;
+    }
+
+    /**
+     * float32 little-endian, Base64 encoded
+     */
+    public static String encodeVector(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    public static float[] decodeVector(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encoded)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[buffer.remaining() / Float.BYTES];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FileEntry {
+        private String path;
+        private long size;
+        private long lastModified;
+        private String contentHash;
+
+        @Builder.Default
+        private List<String> chunkIds = new ArrayList<>();
+
+        // Sum of this file's chunk embeddings (see encodeVector); null until computed
+        private String embeddingSum;
+
+        public boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+}
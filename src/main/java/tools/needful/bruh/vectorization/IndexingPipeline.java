@@ -0,0 +1,755 @@
+package tools.needful.bruh.vectorization;
+
+import tools.needful.bruh.experts.Expert;
+import tools.needful.bruh.experts.ExpertRegistry;
+import tools.needful.bruh.experts.ExpertStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Staged indexing pipeline: LOAD → CHUNK → EMBED → STORE.
+ *
+ * Each stage runs a fixed number of virtual-thread workers fed by a bounded queue,
+ * so a slow stage (usually EMBED) applies backpressure instead of buffering the
+ * whole corpus in memory. Work items carry their expert job. A failed work item fails
+ * only the files it carries: their manifest entries keep the chunks already in Chroma
+ * but lose their content hash, so the next run reads them again. Only a failure to list
+ * an expert's folder fails the whole expert.
+ *
+ * Nothing runs without the vector store: a run first waits for Chroma (with backoff,
+ * up to store-wait-ms) and leaves manifests untouched if it stays unreachable. Writes
+ * to Chroma are retried store-retries times with exponential backoff.
+ */
+@Slf4j
+@Component
+public class IndexingPipeline {
+
+    @Autowired
+    private DocumentLoader documentLoader;
+
+    @Autowired
+    private DocumentChunker documentChunker;
+
+    @Autowired
+    private ManifestStore manifestStore;
+
+    @Autowired
+    private ChunkStore chunkStore;
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private ExpertRegistry expertRegistry;
+
+    @Value("${agent.experts.indexing.load-concurrency:8}")
+    private int loadConcurrency;
+
+    @Value("${agent.experts.indexing.chunk-concurrency:4}")
+    private int chunkConcurrency;
+
+    @Value("${agent.experts.indexing.embed-concurrency:8}")
+    private int embedConcurrency;
+
+    @Value("${agent.experts.indexing.store-concurrency:2}")
+    private int storeConcurrency;
+
+    @Value("${agent.experts.indexing.embed-batch-size:100}")
+    private int embedBatchSize;
+
+    @Value("${agent.experts.indexing.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${agent.experts.indexing.store-retries:3}")
+    private int storeRetries;
+
+    @Value("${agent.experts.indexing.store-backoff-ms:1000}")
+    private long storeBackoffMs;
+
+    @Value("${agent.experts.indexing.store-wait-ms:600000}")
+    private long storeWaitMs;
+
+    // Startup indexing and the docs watcher must not work on the same manifests at once
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    /**
+     * Brings the given expert folders in sync with the vector store.
+     * Returns false, having changed nothing, if the vector store could not be reached.
+     */
+    public boolean index(List<File> expertFolders) {
+        runLock.lock();
+        try {
+            String collectionId = awaitCollectionId();
+            if (collectionId == null) {
+                return false;
+            }
+            runPipeline(expertFolders, collectionId);
+            return true;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Removes an expert whose folder is gone: its chunks, its manifest and its registry entry.
+     * The folder is checked again under the run lock, since callers decide from an earlier
+     * listing and the folder may have been re-created (and indexed) meanwhile.
+     */
+    public void remove(File expertFolder) {
+        String expertName = expertFolder.getName();
+        runLock.lock();
+        try {
+            if (expertFolder.isDirectory()) {
+                log.info("Expert folder is back, not removing: {}", expertName);
+                return;
+            }
+            String collectionId = chunkStore.getCollectionId();
+            if (collectionId == null) {
+                // Keep the manifest, it is the only record of the chunks to delete
+                throw new IllegalStateException("Vector store unreachable, not removing expert " + expertName);
+            }
+            manifestStore.load(expertName)
+                .filter(m -> collectionId.equals(m.getCollectionId()))
+                .ifPresent(m -> chunkStore.delete(m.getFiles().values().stream()
+                    .flatMap(entry -> entry.getChunkIds().stream())
+                    .collect(Collectors.toList())));
+            manifestStore.delete(expertName);
+            expertRegistry.unregister(expertName);
+            log.info("✗ Removed expert no longer on disk: {}", expertName);
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * The Chroma collection ID, retrying with exponential backoff (capped at a minute)
+     * for up to store-wait-ms; null if Chroma stayed unreachable
+     */
+    private String awaitCollectionId() {
+        long giveUpAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(storeWaitMs);
+        long backoffMs = storeBackoffMs;
+        while (true) {
+            String collectionId = chunkStore.getCollectionId();
+            if (collectionId != null) {
+                return collectionId;
+            }
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs) - giveUpAt > 0) {
+                log.error("Vector store still unreachable after {} ms, indexing skipped (manifests kept)", storeWaitMs);
+                return null;
+            }
+            log.warn("Vector store unreachable, retrying in {} ms", backoffMs);
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            backoffMs = Math.min(backoffMs * 2, TimeUnit.MINUTES.toMillis(1));
+        }
+    }
+
+    /**
+     * Runs a vector store write, retrying transient failures with exponential backoff
+     */
+    private void withStoreRetries(String what, Runnable write) throws InterruptedException {
+        long backoffMs = storeBackoffMs;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                write.run();
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= storeRetries) {
+                    throw e;
+                }
+                log.warn("Vector store {} failed (attempt {} of {}), retrying in {} ms: {}",
+                    what, attempt + 1, storeRetries + 1, backoffMs, e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs *= 2;
+            }
+        }
+    }
+
+    private void runPipeline(List<File> expertFolders, String collectionId) {
+        List<ExpertJob> jobs = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Stage<StoreBatch> store = new Stage<>("store", storeConcurrency, queueCapacity, executor,
+                this::store);
+            Stage<EmbedBatch> embed = new Stage<>("embed", embedConcurrency, queueCapacity, executor,
+                batch -> embed(batch, store));
+            Stage<FileWork> chunk = new Stage<>("chunk", chunkConcurrency, queueCapacity, executor,
+                work -> chunk(work, embed));
+            Stage<FileWork> load = new Stage<>("load", loadConcurrency, queueCapacity, executor,
+                work -> load(work, chunk));
+
+            for (File folder : expertFolders) {
+                ExpertJob job = new ExpertJob(folder, previousManifest(folder.getName(), collectionId), collectionId);
+                jobs.add(job);
+                expertRegistry.startIndexing(job.name, restoredExpert(job.previous));
+                try {
+                    scan(job, load);
+                } catch (Exception e) {
+                    job.fail("scan", e);
+                }
+            }
+
+            // Stages are closed upstream-first: once a stage has drained, nothing can feed the next one
+            try {
+                load.close();
+                chunk.close();
+                for (ExpertJob job : jobs) {
+                    try {
+                        job.drainPending(embedBatchSize).forEach(embed::submit);
+                    } catch (IllegalStateException e) {
+                        job.fail("embed", e);
+                    }
+                }
+                embed.close();
+            } finally {
+                // Also on the way out of a failure, or the executor would wait on idle workers forever
+                load.close();
+                chunk.close();
+                embed.close();
+                store.close();
+            }
+        }
+
+        jobs.forEach(this::finish);
+    }
+
+    /**
+     * Manifests are only trusted for the Chroma collection they were written against
+     */
+    private IndexManifest previousManifest(String expertName, String collectionId) {
+        return manifestStore.load(expertName)
+            .filter(m -> collectionId.equals(m.getCollectionId()))
+            .orElseGet(() -> new IndexManifest(expertName, collectionId));
+    }
+
+    /**
+     * An expert with a valid manifest already has its chunks in Chroma and can serve
+     * queries while the refresh runs
+     */
+    private Expert restoredExpert(IndexManifest manifest) {
+        if (manifest.getFiles().isEmpty() || manifest.getUpdatedAt() == null) {
+            return null;
+        }
+
+        return Expert.builder()
+            .name(manifest.getExpert())
+            .documentCount(manifest.getFiles().size())
+            .chunkCount(manifest.getChunkCount())
+            .indexedAt(LocalDateTime.ofInstant(manifest.getUpdatedAt(), ZoneId.systemDefault()))
+            .status(ExpertStatus.READY)
+            .centroid(manifest.computeCentroid())
+            .build();
+    }
+
+    /**
+     * Stats every file of an expert; only files whose size or mtime changed are read
+     */
+    private void scan(ExpertJob job, Stage<FileWork> load) throws IOException {
+        Path root = job.folder.toPath();
+        Set<String> seen = new HashSet<>();
+
+        for (Path path : documentLoader.listDocumentFiles(job.folder)) {
+            String key = root.relativize(path).toString().replace(File.separatorChar, '/');
+            long size = Files.size(path);
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            IndexManifest.FileEntry old = job.previous.getFiles().get(key);
+            seen.add(key);
+
+            // Same size and mtime: trust the manifest without reading the file
+            if (old != null && old.matches(size, lastModified)) {
+                job.files.put(key, old);
+                expertRegistry.recordProgress(job.name, 1, 0);
+                continue;
+            }
+
+            load.submit(new FileWork(job, key, path, size, lastModified, null, null));
+        }
+
+        // Files that disappeared since the last run
+        job.previous.getFiles().forEach((key, old) -> {
+            if (!seen.contains(key)) {
+                job.staleChunkIds.put(key, old.getChunkIds());
+            }
+        });
+    }
+
+    private void load(FileWork work, Stage<FileWork> chunk) throws IOException {
+        Document doc = documentLoader.load(work.path());
+        String contentHash = ContentHash.sha256(doc.getText());
+        IndexManifest.FileEntry old = work.job().previous.getFiles().get(work.key());
+
+        // Touched but identical: refresh stat fields, keep chunks
+        if (old != null && contentHash.equals(old.getContentHash())) {
+            old.setSize(work.size());
+            old.setLastModified(work.lastModified());
+            work.job().files.put(work.key(), old);
+            expertRegistry.recordProgress(work.job().name, 1, 0);
+            return;
+        }
+
+        chunk.submit(new FileWork(work.job(), work.key(), work.path(), work.size(), work.lastModified(),
+            doc, contentHash));
+    }
+
+    /**
+     * Chunks a changed file; only chunks whose stable ID is new need embedding
+     */
+    private void chunk(FileWork work, Stage<EmbedBatch> embed) {
+        ExpertJob job = work.job();
+        Document doc = work.document();
+        doc.getMetadata().put("expert", job.name);
+        doc.getMetadata().put("relative_path", work.key());
+        List<Document> docChunks = documentChunker.chunk(List.of(doc));
+
+        IndexManifest.FileEntry old = job.previous.getFiles().get(work.key());
+        Set<String> oldIds = old != null ? new HashSet<>(old.getChunkIds()) : new HashSet<>();
+
+        List<Document> fresh = new ArrayList<>();
+        List<String> retained = new ArrayList<>();
+        for (Document chunk : docChunks) {
+            if (oldIds.remove(chunk.getId())) {
+                retained.add(chunk.getId());
+            } else {
+                chunk.getMetadata().put("indexed_at", job.indexedAt);
+                fresh.add(chunk);
+            }
+        }
+        job.staleChunkIds.put(work.key(), new ArrayList<>(oldIds));
+        job.retainedChunkIds.put(work.key(), retained);
+        job.changedFiles.incrementAndGet();
+        expertRegistry.recordProgress(job.name, 1, 0);
+
+        job.files.put(work.key(), IndexManifest.FileEntry.builder()
+            .path(work.key())
+            .size(work.size())
+            .lastModified(work.lastModified())
+            .contentHash(work.contentHash())
+            .chunkIds(docChunks.stream().map(Document::getId).collect(Collectors.toList()))
+            .build());
+
+        job.addPending(fresh, embedBatchSize).forEach(embed::submit);
+    }
+
+    private void embed(EmbedBatch batch, Stage<StoreBatch> store) {
+        List<String> texts = batch.chunks().stream()
+            .map(Document::getText)
+            .collect(Collectors.toList());
+
+        List<float[]> embeddings = embeddingModel.embed(texts);
+        store.submit(new StoreBatch(batch.job(), batch.chunks(), embeddings));
+    }
+
+    private void store(StoreBatch batch) throws InterruptedException {
+        withStoreRetries("upsert", () -> chunkStore.upsert(batch.chunks(), batch.embeddings()));
+        for (int i = 0; i < batch.chunks().size(); i++) {
+            Document chunk = batch.chunks().get(i);
+            String key = (String) chunk.getMetadata().get("relative_path");
+            batch.job().addToEmbeddingSum(key, batch.embeddings().get(i));
+            batch.job().storedChunkIds.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(chunk.getId());
+        }
+        batch.job().upserted.addAndGet(batch.chunks().size());
+        expertRegistry.recordProgress(batch.job().name, 0, batch.chunks().size());
+    }
+
+    /**
+     * Runs after all stages drained: delete stale chunks, persist the manifest, register the expert
+     */
+    private void finish(ExpertJob job) {
+        if (job.failure != null) {
+            log.error("Failed to vectorize expert: {} (during {})", job.name, job.failedStage, job.failure);
+            expertRegistry.indexingFailed(job.name);
+            return;
+        }
+
+        try {
+            keepFailedFiles(job);
+
+            // A failed file's old chunks stay: its manifest entry still lists them
+            List<String> stale = new ArrayList<>();
+            job.staleChunkIds.forEach((key, ids) -> {
+                if (!job.failedFiles.containsKey(key)) {
+                    stale.addAll(ids);
+                }
+            });
+            withStoreRetries("delete", () -> chunkStore.delete(stale));
+
+            completeEmbeddingSums(job);
+
+            IndexManifest manifest = new IndexManifest(job.name, job.collectionId);
+            manifest.getFiles().putAll(job.files);
+            boolean changed = job.upserted.get() > 0 || !stale.isEmpty() || job.previous.getUpdatedAt() == null;
+            manifest.setUpdatedAt(changed ? Instant.now() : job.previous.getUpdatedAt());
+            manifestStore.save(manifest);
+
+            if (manifest.getFiles().isEmpty()) {
+                log.warn("No documents found for expert: {}", job.name);
+                expertRegistry.unregister(job.name);
+                return;
+            }
+
+            expertRegistry.register(Expert.builder()
+                .name(job.name)
+                .documentCount(manifest.getFiles().size())
+                .chunkCount(manifest.getChunkCount())
+                .indexedAt(LocalDateTime.ofInstant(manifest.getUpdatedAt(), ZoneId.systemDefault()))
+                .status(ExpertStatus.READY)
+                .documentsProcessed(manifest.getFiles().size())
+                .chunksEmbedded(job.upserted.get())
+                .centroid(manifest.computeCentroid())
+                .build());
+            if (changed) {
+                expertRegistry.indexChanged();
+            }
+
+            log.info("✓ Vectorized expert: {} ({} chunks from {} documents; {} changed files, {} chunks upserted, {} stale chunks removed)",
+                     job.name, manifest.getChunkCount(), manifest.getFiles().size(),
+                     job.changedFiles.get(), job.upserted.get(), stale.size());
+            if (!job.failedFiles.isEmpty()) {
+                log.warn("Expert {}: {} file(s) failed and will be retried on the next run: {}",
+                    job.name, job.failedFiles.size(), job.failedFiles.keySet());
+            }
+        } catch (Exception e) {
+            log.error("Failed to vectorize expert: {}", job.name, e);
+            expertRegistry.indexingFailed(job.name);
+        }
+    }
+
+    /**
+     * Failed files keep whatever is in Chroma for them (their previous chunks and any
+     * new chunks stored before the failure) under an entry with no content hash and no
+     * stat fields, so the next run re-reads them and embeds only the chunks still missing
+     */
+    private void keepFailedFiles(ExpertJob job) {
+        job.failedFiles.forEach((key, failure) -> {
+            log.warn("Failed to index {}/{}: {}", job.name, key, failure.getMessage());
+            IndexManifest.FileEntry old = job.previous.getFiles().get(key);
+            Set<String> inStore = new LinkedHashSet<>();
+            if (old != null) {
+                inStore.addAll(old.getChunkIds());
+            }
+            inStore.addAll(job.storedChunkIds.getOrDefault(key, Set.of()));
+
+            if (inStore.isEmpty()) {
+                job.files.remove(key);
+                return;
+            }
+            job.files.put(key, IndexManifest.FileEntry.builder()
+                .path(key)
+                .size(-1)
+                .lastModified(-1)
+                .chunkIds(new ArrayList<>(inStore))
+                .build());
+        });
+    }
+
+    /**
+     * Fills in the embedding sum of every file entry that lacks one: vectors embedded in
+     * this run are already summed, retained chunks (and manifests written before sums
+     * existed) are read back from Chroma. A missing profile only costs local routing,
+     * so failures here are logged, not fatal.
+     */
+    private void completeEmbeddingSums(ExpertJob job) {
+        Map<String, List<String>> toFetch = new HashMap<>();
+        job.files.forEach((key, entry) -> {
+            if (entry.getEmbeddingSum() == null && !job.failedFiles.containsKey(key)) {
+                List<String> ids = job.retainedChunkIds.containsKey(key)
+                    ? job.retainedChunkIds.get(key) : entry.getChunkIds();
+                toFetch.put(key, ids);
+            }
+        });
+        if (toFetch.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, float[]> stored = chunkStore.getEmbeddings(toFetch.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+
+            toFetch.forEach((key, ids) -> {
+                for (String id : ids) {
+                    float[] vector = stored.get(id);
+                    if (vector != null) {
+                        job.addToEmbeddingSum(key, vector);
+                    }
+                }
+                float[] sum = job.embeddingSums.get(key);
+                if (sum != null) {
+                    job.files.get(key).setEmbeddingSum(IndexManifest.encodeVector(sum));
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Could not compute routing profile for expert {}: {}", job.name, e.getMessage());
+        }
+    }
+
+    /**
+     * Per-expert state shared by all work items of that expert
+     */
+    private static final class ExpertJob {
+        final String name;
+        final File folder;
+        final IndexManifest previous;
+        final String collectionId;
+        final String indexedAt = Instant.now().toString();
+        final Map<String, IndexManifest.FileEntry> files = new ConcurrentHashMap<>();
+        // File key -> chunk IDs of the previous run that the file no longer has
+        final Map<String, List<String>> staleChunkIds = new ConcurrentHashMap<>();
+        // File key -> chunk IDs upserted in this run
+        final Map<String, Set<String>> storedChunkIds = new ConcurrentHashMap<>();
+        // File key -> why it could not be indexed
+        final Map<String, Exception> failedFiles = new ConcurrentHashMap<>();
+        final AtomicInteger changedFiles = new AtomicInteger();
+        final AtomicInteger upserted = new AtomicInteger();
+        // Changed files: chunk IDs kept from the previous run (not re-embedded)
+        final Map<String, List<String>> retainedChunkIds = new ConcurrentHashMap<>();
+        // Per-file sum of the chunk vectors seen in this run
+        final Map<String, float[]> embeddingSums = new ConcurrentHashMap<>();
+        private final List<Document> pending = new ArrayList<>();
+        volatile Exception failure;
+        volatile String failedStage;
+
+        ExpertJob(File folder, IndexManifest previous, String collectionId) {
+            this.name = folder.getName();
+            this.folder = folder;
+            this.previous = previous;
+            this.collectionId = collectionId;
+        }
+
+        void addToEmbeddingSum(String key, float[] vector) {
+            embeddingSums.compute(key, (k, sum) -> {
+                if (sum == null) {
+                    return vector.clone();
+                }
+                for (int i = 0; i < Math.min(sum.length, vector.length); i++) {
+                    sum[i] += vector[i];
+                }
+                return sum;
+            });
+        }
+
+        void fail(String stage, Exception e) {
+            if (failure == null) {
+                failedStage = stage;
+                failure = e;
+            }
+        }
+
+        void failFiles(List<String> keys, String stage, Exception e) {
+            Exception failure = new IOException(stage + " failed", e);
+            for (String key : keys) {
+                failedFiles.putIfAbsent(key, failure);
+            }
+        }
+
+        /**
+         * Buffers chunks and hands back every full batch; batches never mix experts
+         */
+        synchronized List<EmbedBatch> addPending(List<Document> chunks, int batchSize) {
+            pending.addAll(chunks);
+            List<EmbedBatch> batches = new ArrayList<>();
+            while (pending.size() >= batchSize) {
+                List<Document> batch = new ArrayList<>(pending.subList(0, batchSize));
+                pending.subList(0, batchSize).clear();
+                batches.add(new EmbedBatch(this, batch));
+            }
+            return batches;
+        }
+
+        synchronized List<EmbedBatch> drainPending(int batchSize) {
+            List<EmbedBatch> batches = addPending(List.of(), batchSize);
+            if (!pending.isEmpty() && failure == null) {
+                batches.add(new EmbedBatch(this, new ArrayList<>(pending)));
+            }
+            pending.clear();
+            return batches;
+        }
+    }
+
+    private interface JobItem {
+        ExpertJob job();
+
+        /**
+         * Files whose indexing fails if this item fails
+         */
+        List<String> fileKeys();
+    }
+
+    private record FileWork(ExpertJob job, String key, Path path, long size, long lastModified,
+                            Document document, String contentHash) implements JobItem {
+        @Override
+        public List<String> fileKeys() {
+            return List.of(key);
+        }
+    }
+
+    private record EmbedBatch(ExpertJob job, List<Document> chunks) implements JobItem {
+        @Override
+        public List<String> fileKeys() {
+            return fileKeysOf(chunks);
+        }
+    }
+
+    private record StoreBatch(ExpertJob job, List<Document> chunks, List<float[]> embeddings) implements JobItem {
+        @Override
+        public List<String> fileKeys() {
+            return fileKeysOf(chunks);
+        }
+    }
+
+    private static List<String> fileKeysOf(List<Document> chunks) {
+        return chunks.stream()
+            .map(chunk -> (String) chunk.getMetadata().get("relative_path"))
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    private interface StageHandler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    /**
+     * A bounded queue drained by a fixed number of workers
+     */
+    private static final class Stage<T extends JobItem> {
+        private final String name;
+        private final BlockingQueue<T> queue;
+        private final List<Future<?>> workers = new ArrayList<>();
+        private final AtomicInteger running;
+        private volatile boolean closed;
+        // Set once the last worker exited; nothing will take from the queue any more
+        private volatile boolean stopped;
+
+        Stage(String name, int concurrency, int capacity, ExecutorService executor, StageHandler<T> handler) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.running = new AtomicInteger(Math.max(1, concurrency));
+            for (int i = 0; i < Math.max(1, concurrency); i++) {
+                workers.add(executor.submit(() -> {
+                    try {
+                        work(handler);
+                    } finally {
+                        workerExited();
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        /**
+         * Blocks while the queue is full, which is what throttles upstream stages.
+         * Fails fast instead once the stage's workers are gone (interrupted), so an
+         * upstream stage cannot wait forever on a queue nobody drains.
+         */
+        void submit(T item) {
+            try {
+                while (!stopped) {
+                    if (queue.offer(item, 50, TimeUnit.MILLISECONDS)) {
+                        // The last worker may have exited (and drained) between the check and the offer
+                        if (stopped && queue.remove(item)) {
+                            break;
+                        }
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing " + name + " work", e);
+            }
+            throw new IllegalStateException("Indexing " + name + " stage has stopped");
+        }
+
+        /**
+         * When the last worker is gone, whatever is still queued fails its files
+         */
+        private void workerExited() {
+            if (running.decrementAndGet() > 0) {
+                return;
+            }
+            stopped = true;
+            IllegalStateException stoppedEarly = new IllegalStateException("Indexing " + name + " stage has stopped");
+            for (T item; (item = queue.poll()) != null; ) {
+                item.job().failFiles(item.fileKeys(), name, stoppedEarly);
+            }
+        }
+
+        private void work(StageHandler<T> handler) throws InterruptedException {
+            while (true) {
+                T item = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+
+                // Drop remaining work of an expert that already failed
+                if (item.job().failure != null) {
+                    continue;
+                }
+
+                try {
+                    handler.handle(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    item.job().failFiles(item.fileKeys(), name, e);
+                    return;
+                } catch (Exception e) {
+                    item.job().failFiles(item.fileKeys(), name, e);
+                }
+            }
+        }
+
+        /**
+         * Signals that no more input will arrive and waits for the queue to drain
+         */
+        void close() {
+            closed = true;
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    log.error("Indexing {} worker died", name, e.getCause());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package tools.needful.bruh.vectorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes per-expert index manifests as JSON files under
+ * agent.experts.manifest-path (one file per expert).
+ */
+@Slf4j
+@Component
+public class ManifestStore {
+
+    private final Path manifestDir;
+    private final ObjectMapper mapper;
+
+    public ManifestStore(@Value("${agent.experts.manifest-path:data/manifests}") String manifestPath) {
+        this.manifestDir = Paths.get(manifestPath);
+        this.mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    public Optional<IndexManifest> load(String expertName) {
+        Path file = manifestFile(expertName);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(mapper.readValue(file.toFile(), IndexManifest.class));
+        } catch (IOException e) {
+            log.warn("Unreadable manifest for expert {}, it will be rebuilt: {}", expertName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the manifest atomically so a crash mid-write never leaves a truncated file
+     */
+    public void save(IndexManifest manifest) {
+        try {
+            Files.createDirectories(manifestDir);
+            Path target = manifestFile(manifest.getExpert());
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            mapper.writeValue(tmp.toFile(), manifest);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to write manifest for expert: {}", manifest.getExpert(), e);
+        }
+    }
+
+    public void delete(String expertName) {
+        try {
+            Files.deleteIfExists(manifestFile(expertName));
+        } catch (IOException e) {
+            log.error("Failed to delete manifest for expert: {}", expertName, e);
+        }
+    }
+
+    /**
+     * Names of all experts that have a manifest on disk
+     */
+    public List<String> listExperts() {
+        if (!Files.isDirectory(manifestDir)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(manifestDir)) {
+            return files
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(".json"))
+                .map(name -> name.substring(0, name.length() - ".json".length()))
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Failed to list manifests in: {}", manifestDir, e);
+            return List.of();
+        }
+    }
+
+    private Path manifestFile(String expertName) {
+        return manifestDir.resolve(expertName + ".json");
+    }
+}
@@ -1,34 +1,27 @@
 package tools.needful.bruh.vectorization;
 
-import tools.needful.bruh.experts.Expert;
 import tools.needful.bruh.experts.ExpertRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.time.Instant;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @Component
 public class StartupVectorization {
 
     @Autowired
-    @Lazy
-    private VectorStore vectorStore;
+    private IndexingPipeline indexingPipeline;
 
     @Autowired
-    private DocumentLoader documentLoader;
-
-    @Autowired
-    private DocumentChunker documentChunker;
+    private ManifestStore manifestStore;
 
     @Autowired
     private ExpertRegistry expertRegistry;
@@ -36,8 +29,18 @@ public class StartupVectorization {
     @Value("${agent.experts.base-path}")
     private String expertsBasePath;
 
+    /**
+     * Kicks off indexing in the background so the bot can answer right away;
+     * ExpertRouter only routes to experts once they report READY.
+     */
     @EventListener(ApplicationReadyEvent.class)
     public void vectorizeOnStartup() {
+        Thread.ofVirtual()
+            .name("startup-vectorization")
+            .start(this::vectorize);
+    }
+
+    private void vectorize() {
         log.info("🚀 Starting expert discovery and vectorization...");
 
         File expertsDir = new File(expertsBasePath);
@@ -52,50 +55,40 @@ public class StartupVectorization {
             return;
         }
 
-        for (File expertFolder : expertFolders) {
-            String expertName = expertFolder.getName();
-            try {
-                vectorizeExpert(expertName, expertFolder);
-            } catch (Exception e) {
-                log.error("Failed to vectorize expert: {}", expertName, e);
+        long start = System.currentTimeMillis();
+        // index() already waits store-wait-ms for the vector store; keep trying until it is up
+        while (!indexingPipeline.index(List.of(expertFolders))) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
             }
+            log.warn("Vector store unreachable, retrying startup vectorization");
         }
 
-        log.info("✅ Vectorization complete. {} experts ready.",
-                 expertRegistry.count());
-    }
+        removeDeletedExperts(expertFolders);
 
-    private void vectorizeExpert(String expertName, File expertFolder) {
-        // 1. Load all docs
-        List<Document> rawDocs = documentLoader.loadRecursively(expertFolder);
+        log.info("✅ Vectorization complete in {} ms. {} experts ready.",
+                 System.currentTimeMillis() - start, expertRegistry.count());
+    }
 
-        if (rawDocs.isEmpty()) {
-            log.warn("No documents found for expert: {}", expertName);
-            return;
+    /**
+     * Drops chunks and manifests of expert folders that no longer exist
+     */
+    private void removeDeletedExperts(File[] expertFolders) {
+        Set<String> present = new HashSet<>();
+        for (File folder : expertFolders) {
+            present.add(folder.getName());
         }
 
-        // 2. Chunk documents
-        List<Document> chunks = documentChunker.chunk(rawDocs);
-
-        // 3. Add metadata
-        chunks.forEach(chunk -> {
-            chunk.getMetadata().put("expert", expertName);
-            chunk.getMetadata().put("indexed_at", Instant.now().toString());
-        });
-
-        // 4. Store in Chroma (vectorization happens automatically)
-        vectorStore.add(chunks);
-
-        // 5. Register expert
-        Expert expert = Expert.builder()
-            .name(expertName)
-            .documentCount(rawDocs.size())
-            .chunkCount(chunks.size())
-            .build();
-
-        expertRegistry.register(expert);
+        for (String expertName : manifestStore.listExperts()) {
+            if (present.contains(expertName)) {
+                continue;
+            }
 
-        log.info("✓ Vectorized expert: {} ({} chunks from {} documents)",
-                 expertName, chunks.size(), rawDocs.size());
+            try {
+                indexingPipeline.remove(new File(expertsBasePath, expertName));
+            } catch (Exception e) {
+                log.error("Failed to remove deleted expert: {}", expertName, e);
+            }
+        }
     }
 }
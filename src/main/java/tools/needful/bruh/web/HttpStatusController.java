@@ -0,0 +1,25 @@
+package tools.needful.bruh.web;
+
+import tools.needful.bruh.http.HttpTransportMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Outbound HTTP counters per host (Gemini, Chroma).
+ *
+ * GET /status/http
+ */
+@RestController
+public class HttpStatusController {
+
+    @Autowired
+    private HttpTransportMetrics httpTransportMetrics;
+
+    @GetMapping("/status/http")
+    public List<HttpTransportMetrics.HostSnapshot> httpStatus() {
+        return httpTransportMetrics.snapshot();
+    }
+}
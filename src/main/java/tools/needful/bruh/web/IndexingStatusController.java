@@ -0,0 +1,54 @@
+package tools.needful.bruh.web;
+
+import tools.needful.bruh.experts.Expert;
+import tools.needful.bruh.experts.ExpertRegistry;
+import tools.needful.bruh.experts.ExpertStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Readiness and indexing progress per expert.
+ *
+ * GET /status/indexing
+ */
+@RestController
+public class IndexingStatusController {
+
+    @Autowired
+    private ExpertRegistry expertRegistry;
+
+    @GetMapping("/status/indexing")
+    public IndexingStatus indexingStatus() {
+        List<ExpertProgress> experts = expertRegistry.getAllExperts().stream()
+            .sorted(Comparator.comparing(Expert::getName))
+            .map(ExpertProgress::of)
+            .collect(Collectors.toList());
+
+        boolean indexing = experts.stream().anyMatch(ExpertProgress::indexing);
+        long ready = experts.stream().filter(e -> e.status() == ExpertStatus.READY).count();
+
+        return new IndexingStatus(indexing, (int) ready, experts.size(), experts);
+    }
+
+    public record IndexingStatus(boolean indexing, int readyExperts, int totalExperts,
+                                 List<ExpertProgress> experts) {
+    }
+
+    public record ExpertProgress(String name, ExpertStatus status, boolean indexing,
+                                 int documentCount, int documentsProcessed,
+                                 int chunkCount, int chunksEmbedded,
+                                 String indexedAt) {
+
+        static ExpertProgress of(Expert expert) {
+            return new ExpertProgress(expert.getName(), expert.getStatus(), expert.isIndexing(),
+                expert.getDocumentCount(), expert.getDocumentsProcessed(),
+                expert.getChunkCount(), expert.getChunksEmbedded(),
+                expert.getIndexedAt() != null ? expert.getIndexedAt().toString() : null);
+        }
+    }
+}
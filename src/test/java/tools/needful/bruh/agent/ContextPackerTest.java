@@ -0,0 +1,81 @@
+package tools.needful.bruh.agent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * ContextPacker budget allocation
+ */
+class ContextPackerTest {
+
+    private static final int MAX_TOKENS = 1000;
+
+    private final ContextPacker packer = new ContextPacker();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(packer, "maxTokens", MAX_TOKENS);
+        ReflectionTestUtils.setField(packer, "charsPerToken", 4);
+        ReflectionTestUtils.setField(packer, "dedupeThreshold", 0.85);
+    }
+
+    @Test
+    void budgetOfUndersizedSourcesGoesToTheRest() {
+        List<Document> docs = new ArrayList<>();
+        docs.add(doc("runbook", 0.9, 4000));
+        // Each share of the full budget is below the useful minimum, so some must be dropped
+        for (int i = 1; i <= 5; i++) {
+            docs.add(doc("note" + i, 0.05, 100));
+        }
+
+        String context = packer.pack(List.of(), docs);
+
+        List<String> bodies = documentBodies(context);
+        assertThat(bodies).hasSizeBetween(2, 5);
+        int used = bodies.stream().mapToInt(packer::estimateTokens).sum();
+        assertThat(used).isCloseTo(MAX_TOKENS, within(5));
+    }
+
+    @Test
+    void keepsEverySourceThatFits() {
+        String context = packer.pack(List.of("Time: 12:00 UTC"),
+            List.of(doc("runbook", 0.9, 200), doc("faq", 0.1, 100)));
+
+        assertThat(context).startsWith("=== DATA FROM SKILLS ===\n\nTime: 12:00 UTC");
+        assertThat(documentBodies(context)).hasSize(2).noneMatch(body -> body.endsWith("[truncated]"));
+    }
+
+    /**
+     * Text of about the given number of tokens, one line of distinct words without sentence breaks
+     */
+    private static Document doc(String source, double score, int tokens) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < tokens * 4; i++) {
+            text.append(source).append('w').append(i).append(' ');
+        }
+        return Document.builder()
+            .text(text.substring(0, tokens * 4))
+            .metadata(Map.of("source", source))
+            .score(score)
+            .build();
+    }
+
+    private static List<String> documentBodies(String context) {
+        List<String> bodies = new ArrayList<>();
+        for (String block : context.split("\n\n")) {
+            if (block.startsWith("[Document ")) {
+                bodies.add(block.substring(block.indexOf('\n') + 1));
+            }
+        }
+        return bodies;
+    }
+}
@@ -0,0 +1,108 @@
+package tools.needful.bruh.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.needful.bruh.experts.Expert;
+import tools.needful.bruh.experts.ExpertRegistry;
+import tools.needful.bruh.experts.ExpertRouter;
+import tools.needful.bruh.gemini.GeminiApiClient;
+import tools.needful.bruh.metrics.LlmCallSite;
+import tools.needful.bruh.metrics.PipelineMetrics;
+import tools.needful.bruh.skills.SkillRegistry;
+import tools.needful.bruh.skills.SkillRouter;
+import tools.needful.bruh.skills.builtin.EchoSkill;
+import tools.needful.bruh.skills.builtin.TimeSkill;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * QueryRouter with trigger phrases, against mocked expert routing and Gemini
+ */
+@ExtendWith(MockitoExtension.class)
+class QueryRouterTest {
+
+    private static final String TRIGGER_AND_DOCS_QUERY = "what's today's date for the release freeze in the deploy docs";
+
+    @Mock
+    private GeminiApiClient geminiApiClient;
+
+    @Mock
+    private ExpertRegistry expertRegistry;
+
+    @Mock
+    private SkillRouter skillRouter;
+
+    @Mock
+    private ExpertRouter expertRouter;
+
+    @Mock
+    private PipelineMetrics pipelineMetrics;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private QueryRouter queryRouter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(queryRouter, "skillRegistry",
+            new SkillRegistry(List.of(new TimeSkill(), new EchoSkill())));
+        lenient().when(pipelineMetrics.llmCall(any(), any()))
+            .thenAnswer(call -> call.<Supplier<?>>getArgument(1).get());
+    }
+
+    @Test
+    void queryOfTriggerPhrasesOnlySkipsRouting() {
+        QueryRouter.RoutingPlan plan = queryRouter.route("What time is it?", null);
+
+        assertThat(plan).isEqualTo(new QueryRouter.RoutingPlan(QueryRouter.RouteDecision.SKILL,
+            List.of("time"), List.of()));
+        verifyNoInteractions(expertRouter, geminiApiClient);
+    }
+
+    @Test
+    void triggerWithOtherContentKeepsLocallyRoutedExperts() {
+        float[] vector = {1f, 0f};
+        when(expertRouter.routeLocally(vector)).thenReturn(Optional.of(List.of("deploy")));
+
+        QueryRouter.RoutingPlan plan = queryRouter.route(TRIGGER_AND_DOCS_QUERY, vector);
+
+        assertThat(plan).isEqualTo(new QueryRouter.RoutingPlan(QueryRouter.RouteDecision.BOTH,
+            List.of("time"), List.of("deploy")));
+        verifyNoInteractions(geminiApiClient);
+    }
+
+    @Test
+    void triggerWithOtherContentAsksRoutingCallForAmbiguousExperts() {
+        float[] vector = {1f, 0f};
+        when(expertRouter.routeLocally(vector)).thenReturn(Optional.empty());
+        when(expertRegistry.getExpert("deploy")).thenReturn(Expert.builder().name("deploy").build());
+        when(geminiApiClient.generateStructuredContent(anyString(), anyString()))
+            .thenReturn("{\"route\":\"EXPERT\",\"skills\":[],\"experts\":[\"deploy\"]}");
+
+        QueryRouter.RoutingPlan plan = queryRouter.route(TRIGGER_AND_DOCS_QUERY, vector);
+
+        assertThat(plan).isEqualTo(new QueryRouter.RoutingPlan(QueryRouter.RouteDecision.BOTH,
+            List.of("time"), List.of("deploy")));
+        verify(pipelineMetrics).llmCall(eq(LlmCallSite.ROUTING), any());
+    }
+}
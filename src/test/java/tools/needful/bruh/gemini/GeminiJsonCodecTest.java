@@ -0,0 +1,136 @@
+package tools.needful.bruh.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * GeminiJsonCodec against recorded Gemini API payloads (src/test/resources/gemini)
+ */
+class GeminiJsonCodecTest {
+
+    private final GeminiJsonCodec codec = new GeminiJsonCodec();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void readsTextAndUsageOfGenerateContentResponse() throws IOException {
+        GeminiJsonCodec.GeneratedContent content = codec.readGeneratedContent(payload("generate-content.json"));
+
+        assertThat(content.text()).isEqualTo(
+            "Deploys go through the `release` pipeline: merge to main, then run `./deploy.sh prod`.\n"
+                + "See the runbook for rollbacks.");
+        assertThat(content.usage()).isEqualTo(new GeminiJsonCodec.TokenUsage(1843, 31, 1024));
+    }
+
+    @Test
+    void readsFirstTextPartOfFirstCandidateSkippingNonTextAndNestedParts() throws IOException {
+        GeminiJsonCodec.GeneratedContent content =
+            codec.readGeneratedContent(payload("generate-content-mixed-parts.json"));
+
+        assertThat(content.text()).isEqualTo("First text part.");
+        assertThat(content.usage()).isNull();
+    }
+
+    @Test
+    void rejectsGenerateContentResponseWithoutText() {
+        assertThatThrownBy(() -> codec.readGeneratedContent(payload("generate-content-blocked.json")))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("No text");
+    }
+
+    @Test
+    void rejectsMalformedResponse() {
+        assertThatThrownBy(() -> codec.readGeneratedContent("[]".getBytes(StandardCharsets.UTF_8)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Malformed");
+    }
+
+    @Test
+    void readsStreamedChunksIncludingChunksWithoutText() throws IOException {
+        List<GeminiJsonCodec.GeneratedContent> chunks = new ArrayList<>();
+        for (String line : new String(payload("stream-generate-content.sse"), StandardCharsets.UTF_8).split("\n")) {
+            if (line.startsWith("data:")) {
+                chunks.add(codec.readStreamedContent(line.substring(5).trim().getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        assertThat(chunks).extracting(GeminiJsonCodec.GeneratedContent::text)
+            .containsExactly("To rotate", " the signing key, run", null, " `vault rotate \"signing\"`.\n", null);
+        assertThat(chunks.get(2).usage()).isNull();
+        // Usage is cumulative; the final, text-less chunk carries the totals
+        assertThat(chunks.get(4).usage()).isEqualTo(new GeminiJsonCodec.TokenUsage(912, 17, 512));
+    }
+
+    @Test
+    void readsBatchEmbeddingsInRequestOrder() throws IOException {
+        byte[] response = payload("batch-embed-contents.json");
+
+        List<float[]> embeddings = codec.readBatchEmbeddings(response, 3);
+
+        JsonNode expected = objectMapper.readTree(response).get("embeddings");
+        assertThat(embeddings).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            JsonNode values = expected.get(i).get("values");
+            assertThat(embeddings.get(i)).hasSize(values.size());
+            for (int j = 0; j < values.size(); j++) {
+                assertThat(embeddings.get(i)[j]).isEqualTo(values.get(j).floatValue());
+            }
+        }
+    }
+
+    @Test
+    void rejectsBatchWithUnexpectedEmbeddingCount() {
+        assertThatThrownBy(() -> codec.readBatchEmbeddings(payload("batch-embed-contents.json"), 4))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Expected 4 embeddings, got 3");
+        assertThatThrownBy(() -> codec.readBatchEmbeddings(payload("batch-embed-contents.json"), 2))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Expected 2 embeddings, got 3");
+    }
+
+    @Test
+    void readsEmbeddingsLongerThanDefaultDimensions() throws IOException {
+        StringBuilder json = new StringBuilder("{\"embeddings\":[{\"values\":[");
+        for (int i = 0; i < 3072; i++) {
+            json.append(i > 0 ? "," : "").append(i);
+        }
+        json.append("]}]}");
+
+        float[] values = codec.readBatchEmbeddings(json.toString().getBytes(StandardCharsets.UTF_8), 1).get(0);
+
+        assertThat(values).hasSize(3072);
+        assertThat(values[3071]).isEqualTo(3071f);
+    }
+
+    @Test
+    void writesRequestsThatRoundTripThroughJackson() throws IOException {
+        JsonNode generate = objectMapper.readTree(
+            codec.writeGenerateContentRequest("say \"hi\"\n", 0.2, "{\"type\":\"OBJECT\"}"));
+        assertThat(generate.at("/contents/0/parts/0/text").asText()).isEqualTo("say \"hi\"\n");
+        assertThat(generate.at("/generationConfig/temperature").asDouble()).isEqualTo(0.2);
+        assertThat(generate.at("/generationConfig/responseMimeType").asText()).isEqualTo("application/json");
+        assertThat(generate.at("/generationConfig/responseSchema/type").asText()).isEqualTo("OBJECT");
+
+        JsonNode batch = objectMapper.readTree(
+            codec.writeBatchEmbedContentsRequest("text-embedding-004", List.of("a", "b")));
+        assertThat(batch.get("requests")).hasSize(2);
+        assertThat(batch.at("/requests/1/model").asText()).isEqualTo("models/text-embedding-004");
+        assertThat(batch.at("/requests/1/content/parts/0/text").asText()).isEqualTo("b");
+    }
+
+    private static byte[] payload(String name) throws IOException {
+        try (InputStream in = GeminiJsonCodecTest.class.getResourceAsStream("/gemini/" + name)) {
+            assertThat(in).as(name).isNotNull();
+            return in.readAllBytes();
+        }
+    }
+}